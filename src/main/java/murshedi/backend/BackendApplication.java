@@ -1,10 +1,19 @@
 package murshedi.backend;
 
 import org.springframework.boot.SpringApplication;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.client.RestTemplate;
+import murshedi.backend.ChatBot.config.OpenAiRateLimiter;
+import murshedi.backend.ChatBot.resilience.FeatureGuard;
+import murshedi.backend.ChatBot.service.AudioCache;
 import murshedi.backend.ChatBot.service.AudioService;
+import murshedi.backend.ChatBot.store.SharedAudioStore;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
 
 @SpringBootApplication
 public class BackendApplication {
@@ -13,14 +22,18 @@ public class BackendApplication {
         SpringApplication.run(BackendApplication.class, args);
     }
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
-
+    // The shared RestTemplate is defined in OpenAiHttpClientConfig.
     // Inject the RestTemplate into AudioService’s constructor
     @Bean
-    public AudioService audioService(RestTemplate restTemplate) {
-        return new AudioService(restTemplate);
+    public AudioService audioService(RestTemplate restTemplate, SharedAudioStore sharedAudioStore, AudioCache audioCache,
+                                     @Qualifier("ttsGuard") FeatureGuard ttsGuard,
+                                     OpenAiRateLimiter rateLimiter,
+                                     @Qualifier("ttsExecutor") Executor ttsExecutor,
+                                     @Value("${assistant.tts.max-chunk-chars:400}") int maxChunkChars,
+                                     @Value("${assistant.tts.chunk-parallelism:3}") int chunkParallelism,
+                                     @Value("${assistant.audio.stream-threads:4}") int streamThreads,
+                                     @Value("${assistant.tts.part-grace:${assistant.responses.ttl:1h}}") Duration partGrace) {
+        return new AudioService(restTemplate, sharedAudioStore, audioCache, ttsGuard, rateLimiter, ttsExecutor, maxChunkChars,
+            chunkParallelism, streamThreads, partGrace);
     }
 }
@@ -20,6 +20,18 @@ public class Conversation {
     @Column(name = "thread_id")
     private String threadId;
 
+    // ID of the newest assistant message seen on the thread; the next run's reply is listed after it
+    @Column(name = "last_message_id")
+    private String lastMessageId;
+
+    // Summary the current thread was seeded with when the previous one was compacted
+    @Column(name = "thread_summary", columnDefinition = "TEXT")
+    private String threadSummary;
+
+    // Newest QuestionAnswer covered by threadSummary; later ones were asked on the current thread
+    @Column(name = "summarized_through_id")
+    private Long summarizedThroughId;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnore
@@ -44,6 +56,12 @@ public class Conversation {
 
 
     public void setThreadId(String threadId) { this.threadId = threadId; }
+    public String getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(String lastMessageId) { this.lastMessageId = lastMessageId; }
+    public String getThreadSummary() { return threadSummary; }
+    public void setThreadSummary(String threadSummary) { this.threadSummary = threadSummary; }
+    public Long getSummarizedThroughId() { return summarizedThroughId; }
+    public void setSummarizedThroughId(Long summarizedThroughId) { this.summarizedThroughId = summarizedThroughId; }
 
 }
 
@@ -2,11 +2,20 @@ package murshedi.backend.ChatBot;
 
 import murshedi.backend.Appuser.UserRepository;
 import murshedi.backend.Authentication.JwtUtil;
+import murshedi.backend.ChatBot.controller.DeferredResults;
+import murshedi.backend.ChatBot.resilience.AdaptiveLimiter;
+import murshedi.backend.ChatBot.service.IdempotencyStore;
+import murshedi.backend.ChatBot.service.RequestDeadline;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 @RestController
@@ -15,16 +24,22 @@ public class OpenAiController {
 
     private final QuestionAnswerService questionAnswerService;
     private final JwtUtil jwtUtil;
+    private final IdempotencyStore idempotencyStore;
+    private final AdaptiveLimiter askLimiter;
 
 
-    public OpenAiController(QuestionAnswerService questionAnswerService, JwtUtil jwtUtil, UserRepository userRepository, UserRepository userRepository1, ConversationRepository conversationRepository) {
+    public OpenAiController(QuestionAnswerService questionAnswerService, JwtUtil jwtUtil, IdempotencyStore idempotencyStore,
+                            @Qualifier("askLimiter") AdaptiveLimiter askLimiter, UserRepository userRepository, UserRepository userRepository1, ConversationRepository conversationRepository) {
         this.questionAnswerService = questionAnswerService;
         this.jwtUtil = jwtUtil;
+        this.idempotencyStore = idempotencyStore;
+        this.askLimiter = askLimiter;
     }
 
     @PostMapping("/ask")
     @PreAuthorize("hasAuthority('ROLE_USER')")
-    public ResponseEntity<Map<String, String>> askQuestion(@RequestBody Map<String, String> request, @RequestHeader("Authorization") String token) {
+    public DeferredResult<ResponseEntity<Map<String, String>>> askQuestion(@RequestBody Map<String, String> request, @RequestHeader("Authorization") String token,
+                                                                        @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
 
         String userQuestion = request.get("question");
         String thread_id = request.get("thread_id");
@@ -34,13 +49,44 @@ public class OpenAiController {
 
 
         if (userQuestion == null || userQuestion.isEmpty()) {
-            return ResponseEntity.badRequest().body(null);
+            DeferredResult<ResponseEntity<Map<String, String>>> badRequest = new DeferredResult<>();
+            badRequest.setResult(ResponseEntity.badRequest().body(null));
+            return badRequest;
         }
 
         String email = jwtUtil.extractEmail(token.substring(7));
 
-        // Pass user email and conversationId
-        return questionAnswerService.getAnswerFromFlaskAPI(userQuestion, conversationId, email,thread_id);
+        // Pass user email and conversationId; the run is cancelled on timeout or disconnect
+        RequestDeadline deadline = questionAnswerService.newDeadline();
+        String fingerprint = userQuestion + '\u0000' + thread_id + '\u0000' + conversationId;
+        // Sheds the question with 503 when more are in flight than the service currently answers in good time;
+        // retries with the same key attach to the original run without taking another slot
+        CompletableFuture<ResponseEntity<Map<String, String>>> answer = idempotencyStore.execute(
+                "ask:" + email, idempotencyKey, fingerprint,
+                () -> askLimiter.execute(
+                        () -> questionAnswerService.getAnswerFromFlaskAPI(userQuestion, conversationId, email, thread_id, deadline),
+                        () -> !deadline.isAnsweredFromCache()));
+
+        // With a key, a disconnect is likely followed by a retry that attaches to this run, so keep it going
+        return DeferredResults.of(answer, idempotencyKey != null ? deadline.detached() : deadline);
+    }
+
+    @PostMapping(value = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    public ResponseEntity<SseEmitter> streamQuestion(@RequestBody Map<String, String> request, @RequestHeader("Authorization") String token) {
+
+        String userQuestion = request.get("question");
+        String thread_id = request.get("thread_id");
+        String conversationId = request.containsKey("conversationId") ? request.get("conversationId") : null;
+
+        if (userQuestion == null || userQuestion.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String email = jwtUtil.extractEmail(token.substring(7));
+
+        // The answer is saved once the stream has finished
+        return ResponseEntity.ok(questionAnswerService.streamAnswer(userQuestion, conversationId, email, thread_id));
     }
 
 
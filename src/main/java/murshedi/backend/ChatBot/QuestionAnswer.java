@@ -23,6 +23,16 @@ public class QuestionAnswer {
     @Column(length = 1024)
     private String ResponseID;
 
+    // Set for questions asked without a thread; used to seed the similar-question index
+    private Boolean firstTurn;
+
+    @Column(length = 128)
+    private String knowledgeBaseVersion;
+
+    // Content-addressed speech for the answer, shared by every answer with the same text
+    @Column(length = 128)
+    private String audioFile;
+
 
     public void setQuestion(String question) { this.question = question; }
     public void setAnswer(String answer) { this.answer = answer; }
@@ -47,4 +57,28 @@ public class QuestionAnswer {
     public void setResponseID(String responseID) {
         ResponseID = responseID;
     }
+
+    public Boolean getFirstTurn() {
+        return firstTurn;
+    }
+
+    public void setFirstTurn(Boolean firstTurn) {
+        this.firstTurn = firstTurn;
+    }
+
+    public String getKnowledgeBaseVersion() {
+        return knowledgeBaseVersion;
+    }
+
+    public void setKnowledgeBaseVersion(String knowledgeBaseVersion) {
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+    }
+
+    public String getAudioFile() {
+        return audioFile;
+    }
+
+    public void setAudioFile(String audioFile) {
+        this.audioFile = audioFile;
+    }
 }
@@ -1,11 +1,42 @@
 package murshedi.backend.ChatBot;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 @Repository
 public interface QuestionAnswerRepository extends JpaRepository<QuestionAnswer, Long> {
     List<QuestionAnswer> findByConversation_Id(String conversationId);
+
+    boolean existsByConversation_Id(String conversationId);
+
+    @Query("SELECT q FROM QuestionAnswer q WHERE q.ResponseID = ?1")
+    List<QuestionAnswer> findByResponseId(String responseId);
+
+    @Query("SELECT q.id AS id, q.question AS question FROM QuestionAnswer q " +
+           "WHERE q.firstTurn = true AND q.knowledgeBaseVersion = ?1 AND q.id > ?2 ORDER BY q.id")
+    List<IndexedQuestion> findFirstTurnQuestions(String knowledgeBaseVersion, Long afterId, Pageable page);
+
+    // References to a speech file; it may leave the shared audio store once this reaches zero
+    long countByAudioFile(String audioFile);
+
+    List<QuestionAnswer> findByConversation_IdAndIdGreaterThanOrderByIdDesc(String conversationId, Long afterId, Pageable page);
+
+    @Query("SELECT COUNT(q) AS turns, " +
+           "COALESCE(SUM(LENGTH(q.question) + COALESCE(LENGTH(q.answer), 0)), 0) AS characters " +
+           "FROM QuestionAnswer q WHERE q.conversation.id = ?1 AND q.id > ?2")
+    ThreadUsage findThreadUsage(String conversationId, Long afterId);
+
+    interface ThreadUsage {
+        Long getTurns();
+        Long getCharacters();
+    }
+
+    interface IndexedQuestion {
+        Long getId();
+        String getQuestion();
+    }
 }
 
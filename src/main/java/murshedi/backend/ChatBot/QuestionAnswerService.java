@@ -5,12 +5,19 @@ import murshedi.backend.Appuser.UserRepository;
 import murshedi.backend.ChatBot.dto.AssistantRequestDto;
 import murshedi.backend.ChatBot.dto.AssistantResponseDto;
 import murshedi.backend.ChatBot.service.AssistantService;
+import murshedi.backend.ChatBot.service.AudioService;
+import murshedi.backend.ChatBot.service.KnowledgeBaseVersion;
+import murshedi.backend.ChatBot.service.RequestDeadline;
+import murshedi.backend.ChatBot.service.SimilarQuestionIndex;
+import murshedi.backend.ChatBot.service.ThreadCompactor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class QuestionAnswerService {
@@ -19,67 +26,128 @@ public class QuestionAnswerService {
     private final ConversationRepository conversationRepository;
     private final UserRepository userRepository;
     private final AssistantService assistantService;
+    private final KnowledgeBaseVersion knowledgeBaseVersion;
+    private final SimilarQuestionIndex similarQuestions;
+    private final ThreadCompactor threadCompactor;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
     public QuestionAnswerService(QuestionAnswerRepository questionAnswerRepository,
                                  ConversationRepository conversationRepository, 
                                  UserRepository userRepository,
-                                 AssistantService assistantService) {
+                                 AssistantService assistantService,
+                                 KnowledgeBaseVersion knowledgeBaseVersion,
+                                 SimilarQuestionIndex similarQuestions,
+                                 ThreadCompactor threadCompactor) {
         this.questionAnswerRepository = questionAnswerRepository;
         this.conversationRepository = conversationRepository;
         this.userRepository = userRepository;
         this.assistantService = assistantService;
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+        this.similarQuestions = similarQuestions;
+        this.threadCompactor = threadCompactor;
     }
 
-    public ResponseEntity<Map<String, String>> getAnswerFromFlaskAPI(String userQuestion, String conversationId, String email, String thread_id) {
+    public RequestDeadline newDeadline() {
+        return assistantService.newDeadline();
+    }
+
+    public CompletableFuture<ResponseEntity<Map<String, String>>> getAnswerFromFlaskAPI(String userQuestion, String conversationId, String email, String thread_id,
+                                                                                       RequestDeadline deadline) {
         AppUser user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        Conversation conversation;
-
-        if (conversationId == null || !conversationRepository.existsById(conversationId)) {
-            conversationId = conversationId != null ? conversationId : UUID.randomUUID().toString();
-            conversation = new Conversation(user, userQuestion, conversationId);
-        } else {
-            conversation = conversationRepository.findById(conversationId)
-                    .orElseThrow(() -> new RuntimeException("Conversation not found"));
-        }
+        Conversation conversation = resolveConversation(user, conversationId, userQuestion);
 
         boolean blind = userRepository.findBlindModeByEmail(email);
-        String responseId = null;
 
         // Use Spring Boot Assistant Service instead of Flask API
         AssistantRequestDto requestDto = new AssistantRequestDto();
         requestDto.setQuestion(userQuestion);
         requestDto.setThreadId(thread_id);
         requestDto.setBlindMode(blind);
-        
-        AssistantResponseDto assistantResponse = assistantService.processQuestion(requestDto);
-        
-        String answerAsJson = assistantResponse.getAnswer();
-        responseId = assistantResponse.getResponseId();
+
+        // Long conversations move to a fresh, summary-seeded thread before the question is asked
+        return threadCompactor.threadFor(conversation, thread_id).thenCompose(threadId -> {
+            requestDto.setThreadId(threadId);
+            // The cursor only applies to the thread it was read from, not to a compacted one
+            if (threadId != null && threadId.equals(conversation.getThreadId())) {
+                requestDto.setAfterMessageId(conversation.getLastMessageId());
+            }
+            return assistantService.processQuestionAsync(requestDto, deadline);
+        }).thenApply(assistantResponse -> {
+            saveAnswer(conversation, userQuestion, assistantResponse);
+
+            Map<String, String> responseMap = new HashMap<>();
+            responseMap.put("answer", assistantResponse.getAnswer());
+            responseMap.put("thread_id", assistantResponse.getThreadId());
+            responseMap.put("conversationId", conversation.getId());
+            responseMap.put("response_id", assistantResponse.getResponseId());
+            return ResponseEntity.ok(responseMap);
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #getAnswerFromFlaskAPI}. The conversation ID is sent in the
+     * "meta" event and the answer is saved once the assistant stream has finished.
+     */
+    public SseEmitter streamAnswer(String userQuestion, String conversationId, String email, String thread_id) {
+        AppUser user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        Conversation conversation = resolveConversation(user, conversationId, userQuestion);
+        boolean blind = userRepository.findBlindModeByEmail(email);
+
+        AssistantRequestDto requestDto = new AssistantRequestDto();
+        requestDto.setQuestion(userQuestion);
+        requestDto.setThreadId(thread_id);
+        requestDto.setBlindMode(blind);
+
+        return assistantService.streamQuestion(
+                requestDto,
+                threadCompactor.threadFor(conversation, thread_id),
+                Map.of("conversationId", conversation.getId()),
+                response -> saveAnswer(conversation, userQuestion, response));
+    }
+
+    private Conversation resolveConversation(AppUser user, String conversationId, String userQuestion) {
+        if (conversationId == null || !conversationRepository.existsById(conversationId)) {
+            conversationId = conversationId != null ? conversationId : UUID.randomUUID().toString();
+            return new Conversation(user, userQuestion, conversationId);
+        }
+        return conversationRepository.findById(conversationId)
+                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+    }
+
+    private void saveAnswer(Conversation conversation, String userQuestion,
+                            AssistantResponseDto assistantResponse) {
         String returnedThreadId = assistantResponse.getThreadId();
 
-        // Save thread_id only if not already stored
-        if (conversation.getThreadId() == null && returnedThreadId != null) {
+        // Also moves the conversation onto a compacted thread
+        if (returnedThreadId != null) {
+            if (!returnedThreadId.equals(conversation.getThreadId())) {
+                conversation.setLastMessageId(null);
+            }
             conversation.setThreadId(returnedThreadId);
         }
+        if (assistantResponse.getMessageId() != null) {
+            conversation.setLastMessageId(assistantResponse.getMessageId());
+        }
 
+        // A question is a first turn when nothing was asked before it in the conversation,
+        // whether or not the client sent a thread; only those may be indexed for reuse
+        boolean firstTurn = !questionAnswerRepository.existsByConversation_Id(conversation.getId());
         conversationRepository.save(conversation);
 
         QuestionAnswer questionAnswer = new QuestionAnswer();
         questionAnswer.setQuestion(userQuestion);
-        questionAnswer.setAnswer(answerAsJson);
+        questionAnswer.setAnswer(assistantResponse.getAnswer());
         questionAnswer.setConversation(conversation);
-        questionAnswer.setResponseID(responseId);
-        questionAnswerRepository.save(questionAnswer);
-
-        Map<String, String> responseMap = new HashMap<>();
-        responseMap.put("answer", answerAsJson);
-        responseMap.put("thread_id", returnedThreadId);
-        responseMap.put("conversationId", conversation.getId());
-        responseMap.put("response_id", responseId);
-        return ResponseEntity.ok(responseMap);
+        questionAnswer.setResponseID(assistantResponse.getResponseId());
+        // Keeps the shared speech file from being dropped while this answer exists
+        questionAnswer.setAudioFile(AudioService.fileNameOf(assistantResponse.getAudioFile()));
+        questionAnswer.setFirstTurn(firstTurn);
+        questionAnswer.setKnowledgeBaseVersion(knowledgeBaseVersion.current());
+        similarQuestions.add(questionAnswerRepository.save(questionAnswer));
     }
 }
@@ -0,0 +1,77 @@
+package murshedi.backend.ChatBot.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${assistant.executor.pool-size:16}")
+    private int poolSize;
+
+    @Value("${assistant.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${assistant.tts.executor.pool-size:6}")
+    private int ttsPoolSize;
+
+    @Value("${assistant.streaming.pool-size:32}")
+    private int streamingPoolSize;
+
+    @Value("${assistant.streaming.timeout:10m}")
+    private Duration streamingTimeout;
+
+    /**
+     * Executor for assistant work that should not run on a Tomcat request thread.
+     */
+    @Bean(name = "assistantExecutor")
+    public ThreadPoolTaskExecutor assistantExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("assistant-");
+        return executor;
+    }
+
+    /**
+     * Executor for speech chunks. Kept apart from assistantExecutor, whose threads wait on
+     * the chunks, so a burst of blind-mode answers cannot starve their own synthesis.
+     */
+    @Bean(name = "ttsExecutor")
+    public ThreadPoolTaskExecutor ttsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ttsPoolSize);
+        executor.setMaxPoolSize(ttsPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("tts-");
+        return executor;
+    }
+
+    /**
+     * Executor that writes streamed response bodies such as answer streams. Without it Spring MVC
+     * falls back to a thread per request, since the executors above stop Boot from defining one.
+     */
+    @Bean(name = "streamingExecutor")
+    public ThreadPoolTaskExecutor streamingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamingPoolSize);
+        executor.setMaxPoolSize(streamingPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stream-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor());
+        // Long answers take minutes to play; async results that set their own timeout keep it
+        configurer.setDefaultTimeout(streamingTimeout.toMillis());
+    }
+}
@@ -0,0 +1,76 @@
+package murshedi.backend.ChatBot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.resilience.AdaptiveLimiter;
+import murshedi.backend.ChatBot.resilience.Bulkhead;
+import murshedi.backend.ChatBot.resilience.CircuitBreaker;
+import murshedi.backend.ChatBot.resilience.FeatureGuard;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * One {@link FeatureGuard} per OpenAI-backed feature, configured under
+ * {@code assistant.guards.<feature>.*}. The concurrency caps should add up to less than
+ * {@code openai.http.max-per-route}, so a saturated feature cannot take every connection.
+ * <p>
+ * In front of them, {@code askLimiter} sheds questions beyond what the service currently
+ * answers in good time, configured under {@code assistant.admission.*}.
+ */
+@Configuration
+public class FeatureGuardConfig {
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    public FeatureGuardConfig(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public FeatureGuard chatGuard() {
+        return guard("chat", 16, 100, Duration.ofSeconds(10));
+    }
+
+    @Bean
+    public FeatureGuard ttsGuard() {
+        return guard("tts", 6, 50, Duration.ofSeconds(15));
+    }
+
+    @Bean
+    public FeatureGuard filesGuard() {
+        return guard("files", 2, 4, Duration.ofSeconds(5));
+    }
+
+    @Bean
+    public AdaptiveLimiter askLimiter() {
+        String prefix = "assistant.admission.";
+        return new AdaptiveLimiter(
+            "ask",
+            environment.getProperty(prefix + "initial-limit", Integer.class, 20),
+            environment.getProperty(prefix + "min-limit", Integer.class, 4),
+            environment.getProperty(prefix + "max-limit", Integer.class, 200),
+            environment.getProperty(prefix + "smoothing", Double.class, 0.2),
+            environment.getProperty(prefix + "tolerance", Double.class, 1.5),
+            meterRegistry);
+    }
+
+    private FeatureGuard guard(String name, int maxConcurrent, int queueCapacity, Duration maxWait) {
+        String prefix = "assistant.guards." + name + ".";
+        Bulkhead bulkhead = new Bulkhead(
+            name,
+            environment.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+            environment.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity),
+            environment.getProperty(prefix + "max-wait", Duration.class, maxWait));
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+            environment.getProperty(prefix + "failure-rate-threshold", Integer.class, 50),
+            environment.getProperty(prefix + "minimum-calls", Integer.class, 10),
+            environment.getProperty(prefix + "window-size", Integer.class, 20),
+            environment.getProperty(prefix + "open-duration", Duration.class, Duration.ofSeconds(30)),
+            environment.getProperty(prefix + "half-open-calls", Integer.class, 3));
+        return new FeatureGuard(name, bulkhead, circuitBreaker, meterRegistry);
+    }
+}
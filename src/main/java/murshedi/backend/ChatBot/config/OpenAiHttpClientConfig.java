@@ -0,0 +1,99 @@
+package murshedi.backend.ChatBot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outbound HTTP client used for all OpenAI traffic (assistants, files and TTS).
+ * Connections are kept alive and shared by the JDK client, requests to the same host are
+ * multiplexed over HTTP/2 where the server supports it, and every call has connect/read timeouts.
+ * Calls pass the {@link OpenAiRateLimiter} before they wait for a connection slot.
+ */
+@Configuration
+public class OpenAiHttpClientConfig {
+
+    @Value("${openai.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${openai.http.read-timeout:120s}")
+    private Duration readTimeout;
+
+    @Value("${openai.http.max-per-route:32}")
+    private int maxPerRoute;
+
+    @Value("${openai.http.acquire-timeout:10s}")
+    private Duration acquireTimeout;
+
+    @Value("${openai.rate-limit.requests-per-minute:500}")
+    private int requestsPerMinute;
+
+    @Value("${openai.rate-limit.tokens-per-minute:200000}")
+    private int tokensPerMinute;
+
+    @Value("${openai.rate-limit.queue-capacity:200}")
+    private int rateLimitQueueCapacity;
+
+    @Value("${openai.rate-limit.max-wait:20s}")
+    private Duration rateLimitMaxWait;
+
+    @Value("${openai.rate-limit.max-retries:2}")
+    private int rateLimitMaxRetries;
+
+    @Value("${openai.rate-limit.run-token-reserve:1000}")
+    private int runTokenReserve;
+
+    @Bean
+    public HttpClient openAiHttpClient() {
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+    @Bean
+    public RouteLimitingInterceptor routeLimitingInterceptor(MeterRegistry meterRegistry) {
+        return new RouteLimitingInterceptor(maxPerRoute, acquireTimeout, meterRegistry);
+    }
+
+    /**
+     * Admission control for OpenAI calls; the question pipeline also uses it directly to wait
+     * for capacity without holding a thread.
+     */
+    @Bean
+    public OpenAiRateLimiter openAiRateLimiter(HttpClient openAiHttpClient,
+                                               RouteLimitingInterceptor routeLimitingInterceptor,
+                                               MeterRegistry meterRegistry) {
+        // Retries after a 429 still go through the connection slot limit
+        return new OpenAiRateLimiter(
+            requestsPerMinute, tokensPerMinute, rateLimitQueueCapacity, rateLimitMaxWait, rateLimitMaxRetries,
+            runTokenReserve,
+            new InterceptingClientHttpRequestFactory(requestFactory(openAiHttpClient), List.of(routeLimitingInterceptor)),
+            meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate restTemplate(HttpClient openAiHttpClient,
+                                     OpenAiRateLimiter openAiRateLimiter,
+                                     RouteLimitingInterceptor routeLimitingInterceptor) {
+        RestTemplate restTemplate = new RestTemplate(requestFactory(openAiHttpClient));
+        restTemplate.getInterceptors().add(openAiRateLimiter);
+        restTemplate.getInterceptors().add(routeLimitingInterceptor);
+        return restTemplate;
+    }
+
+    private JdkClientHttpRequestFactory requestFactory(HttpClient openAiHttpClient) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(openAiHttpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return requestFactory;
+    }
+}
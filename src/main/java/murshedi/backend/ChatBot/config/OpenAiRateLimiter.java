@@ -0,0 +1,419 @@
+package murshedi.backend.ChatBot.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side admission control for OpenAI calls: token buckets for requests per minute and
+ * (estimated) tokens per minute. Each caller reserves its budget in FIFO order under a short
+ * lock, so one slow admission never holds up the others. When too many callers are waiting or
+ * the wait would exceed {@code maxWait}, an {@link OpenAiRateLimitException} is thrown so our
+ * own clients get a 429 with Retry-After instead of a 500.
+ * <p>
+ * The question pipeline goes through {@link #supplyWhenAdmitted}, which reserves the budget up
+ * front and schedules the call for when the reservation is due, so no executor thread sleeps
+ * while it waits. The first request the call makes is covered by the reservation; any further
+ * ones take their budget without waiting. Other calls (admin endpoints, thread compaction) are
+ * admitted by this interceptor, which sleeps the calling thread until the reservation is due.
+ * <p>
+ * Run status polls and run cancels are never queued or rejected: they keep runs we already pay
+ * for moving and stop the ones nobody waits for. They still draw on the request budget, so
+ * new work slows down instead. A 429 from OpenAI on a poll is not retried here; the poller
+ * retries it on its own schedule.
+ * <p>
+ * A 429 from OpenAI pauses all admissions for the Retry-After it carries and the request is
+ * retried up to {@code maxRetries} times. Retries are sent through {@code retryRequestFactory},
+ * since an interceptor chain can only be walked once per request.
+ */
+public class OpenAiRateLimiter implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiRateLimiter.class);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+    private static final Duration DEFAULT_BACKOFF = Duration.ofSeconds(1);
+    private static final int BYTES_PER_TOKEN = 4;
+    private static final Pattern RUN_PATH = Pattern.compile(".*/threads/[^/]+/runs/[^/]+");
+    private static final Pattern CANCEL_PATH = Pattern.compile(".*/threads/[^/]+/runs/[^/]+/cancel");
+    // Budget reserved by supplyWhenAdmitted for the call running on this thread
+    private static final ThreadLocal<Reservation> RESERVED = new ThreadLocal<>();
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final int queueCapacity;
+    private final Duration maxWait;
+    private final int maxRetries;
+    private final int runTokenReserve;
+    private final ClientHttpRequestFactory retryRequestFactory;
+    // Only keeps time; admitted calls run on the caller's executor
+    private final ScheduledExecutorService scheduler;
+
+    private final ReentrantLock admission = new ReentrantLock();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile long pausedUntilNanos = System.nanoTime();
+
+    private final Timer waitTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedWaitTooLong;
+    private final Counter throttledUpstream;
+
+    public OpenAiRateLimiter(int requestsPerMinute,
+                             int tokensPerMinute,
+                             int queueCapacity,
+                             Duration maxWait,
+                             int maxRetries,
+                             int runTokenReserve,
+                             ClientHttpRequestFactory retryRequestFactory,
+                             MeterRegistry meterRegistry) {
+        this.requestBucket = new TokenBucket(requestsPerMinute);
+        this.tokenBucket = new TokenBucket(tokensPerMinute);
+        this.queueCapacity = queueCapacity;
+        this.maxWait = maxWait;
+        this.maxRetries = maxRetries;
+        this.runTokenReserve = runTokenReserve;
+        this.retryRequestFactory = retryRequestFactory;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "openai-admission");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("openai.rate_limit.waiting", waiting, AtomicInteger::get).register(meterRegistry);
+        this.waitTimer = Timer.builder("openai.rate_limit.wait").register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("openai.rate_limit.rejected").tag("reason", "queue_full").register(meterRegistry);
+        this.rejectedWaitTooLong = Counter.builder("openai.rate_limit.rejected").tag("reason", "wait_too_long").register(meterRegistry);
+        this.throttledUpstream = Counter.builder("openai.rate_limit.upstream_429").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Run {@code call} on {@code executor} once budget for one request and {@code tokens} is
+     * due, without holding a thread while it waits. Fails with an
+     * {@link OpenAiRateLimitException} if the budget cannot be reserved.
+     */
+    public <T> CompletableFuture<T> supplyWhenAdmitted(long tokens, Supplier<T> call, Executor executor) {
+        long cost = Math.min(Math.max(1, tokens), tokenBucket.capacity);
+        long start = System.nanoTime();
+        long waitNanos;
+        try {
+            waitNanos = reserve(cost);
+        } catch (OpenAiRateLimitException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable dispatch = () -> {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            try {
+                executor.execute(() -> {
+                    RESERVED.set(new Reservation(cost));
+                    try {
+                        result.complete(call.get());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        RESERVED.remove();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        if (waitNanos > 0) {
+            scheduler.schedule(dispatch, waitNanos, TimeUnit.NANOSECONDS);
+        } else {
+            dispatch.run();
+        }
+        return result;
+    }
+
+    /**
+     * Estimated tokens of a request carrying {@code text}.
+     */
+    public static long tokensFor(String text) {
+        return text == null ? 1 : Math.max(1, text.getBytes(StandardCharsets.UTF_8).length / BYTES_PER_TOKEN);
+    }
+
+    /**
+     * Estimated tokens of starting a run for {@code prompt}, including the completion reserve.
+     */
+    public long runTokensFor(String prompt) {
+        return tokensFor(prompt) + runTokenReserve;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        long cost = estimateTokens(request, body);
+        String path = request.getURI().getPath();
+        boolean poll = HttpMethod.GET.equals(request.getMethod()) && RUN_PATH.matcher(path).matches();
+        boolean cancel = HttpMethod.POST.equals(request.getMethod()) && CANCEL_PATH.matcher(path).matches();
+        boolean exempt = poll || cancel;
+        Reservation reservation = RESERVED.get();
+        if (exempt) {
+            admitExempt(1, cost);
+        } else if (reservation != null) {
+            reservation.use(cost);
+        } else {
+            admit(cost);
+        }
+        ClientHttpResponse response = execution.execute(request, body);
+
+        for (int attempt = 1; isTooManyRequests(response); attempt++) {
+            Duration retryAfter = retryAfterOf(response.getHeaders(), attempt);
+            response.close();
+            throttledUpstream.increment();
+            pause(retryAfter);
+            if (poll || attempt > maxRetries) {
+                throw new OpenAiRateLimitException("OpenAI rate limit reached, retry later", retryAfter);
+            }
+            logger.warn("OpenAI answered 429, retrying {} {} in {} ms", request.getMethod(), path, retryAfter.toMillis());
+            if (exempt) {
+                sleep(retryAfter.toNanos());
+                admitExempt(1, cost);
+            } else {
+                admit(cost);
+            }
+            response = resend(request, body);
+        }
+        return response;
+    }
+
+    /**
+     * Reserve budget for the call in FIFO order and wait until it is due, or reject it.
+     */
+    private void admit(long cost) {
+        long start = System.nanoTime();
+        long waitNanos = reserve(cost);
+        try {
+            sleep(waitNanos);
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Reserve budget for one request and {@code cost} tokens in FIFO order, counting the caller
+     * as waiting until the caller decrements {@code waiting} again, or reject it.
+     *
+     * @return Nanoseconds until the reservation is due
+     */
+    private long reserve(long cost) {
+        if (waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            rejectedQueueFull.increment();
+            long pausedNanos = pausedUntilNanos - System.nanoTime();
+            throw new OpenAiRateLimitException("Too many requests waiting for OpenAI capacity",
+                Duration.ofNanos(Math.max(pausedNanos, maxWait.toNanos())));
+        }
+        admission.lock();
+        try {
+            long now = System.nanoTime();
+            long waitNanos = Math.max(pausedUntilNanos - now,
+                Math.max(requestBucket.nanosUntil(1, now), tokenBucket.nanosUntil(cost, now)));
+            if (waitNanos > maxWait.toNanos()) {
+                waiting.decrementAndGet();
+                rejectedWaitTooLong.increment();
+                throw new OpenAiRateLimitException("OpenAI rate limit reached, retry later", Duration.ofNanos(waitNanos));
+            }
+            // Buckets may go negative: callers arriving later wait behind this reservation
+            requestBucket.take(1, now);
+            tokenBucket.take(cost, now);
+            return waitNanos;
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    /**
+     * Take budget without waiting for it: for polls and cancels, and for requests of a call
+     * beyond what it reserved.
+     */
+    private void admitExempt(long requests, long cost) {
+        if (requests <= 0 && cost <= 0) {
+            return;
+        }
+        admission.lock();
+        try {
+            long now = System.nanoTime();
+            requestBucket.take(requests, now);
+            tokenBucket.take(cost, now);
+        } finally {
+            admission.unlock();
+        }
+    }
+
+    private void sleep(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenAiRateLimitException("Interrupted waiting for OpenAI capacity", maxWait);
+        }
+    }
+
+    private void pause(Duration retryAfter) {
+        long until = System.nanoTime() + retryAfter.toNanos();
+        synchronized (this) {
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+    }
+
+    private ClientHttpResponse resend(HttpRequest request, byte[] body) throws IOException {
+        ClientHttpRequest retry = retryRequestFactory.createRequest(request.getURI(), request.getMethod());
+        retry.getHeaders().putAll(request.getHeaders());
+        if (body.length > 0) {
+            retry.getBody().write(body);
+        }
+        return retry.execute();
+    }
+
+    /**
+     * Rough prompt size (about four bytes per token), plus a reserve for the completion when a run is started.
+     */
+    private long estimateTokens(HttpRequest request, byte[] body) {
+        long tokens = Math.max(1, body.length / BYTES_PER_TOKEN);
+        if (request.getURI().getPath().endsWith("/runs")) {
+            tokens += runTokenReserve;
+        }
+        return Math.min(tokens, tokenBucket.capacity);
+    }
+
+    private static boolean isTooManyRequests(ClientHttpResponse response) throws IOException {
+        return response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    /**
+     * Reads Retry-After, retry-after-ms or the x-ratelimit-reset-* headers (e.g. "1s", "6m0s"),
+     * falling back to exponential backoff.
+     */
+    private static Duration retryAfterOf(HttpHeaders headers, int attempt) {
+        String millis = headers.getFirst("retry-after-ms");
+        if (millis != null && millis.matches("\\d+(\\.\\d+)?")) {
+            return Duration.ofMillis((long) Double.parseDouble(millis));
+        }
+        String seconds = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (seconds != null && seconds.matches("\\d+")) {
+            return Duration.ofSeconds(Long.parseLong(seconds));
+        }
+        Duration reset = Duration.ZERO;
+        for (String header : new String[]{"x-ratelimit-reset-requests", "x-ratelimit-reset-tokens"}) {
+            Duration parsed = parseResetDuration(headers.getFirst(header));
+            if (parsed.compareTo(reset) > 0) {
+                reset = parsed;
+            }
+        }
+        return reset.isZero() ? DEFAULT_BACKOFF.multipliedBy(1L << Math.min(attempt - 1, 5)) : reset;
+    }
+
+    private static Duration parseResetDuration(String value) {
+        if (value == null) {
+            return Duration.ZERO;
+        }
+        double millis = 0;
+        Matcher matcher = DURATION_PART.matcher(value);
+        while (matcher.find()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "ms" -> amount;
+                case "s" -> amount * 1_000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
+        }
+        return Duration.ofMillis((long) Math.ceil(millis));
+    }
+
+    /**
+     * Budget a call admitted by {@link #supplyWhenAdmitted} has reserved. Only used on the
+     * thread running the call.
+     */
+    private final class Reservation {
+
+        private boolean requestUsed;
+        private long tokens;
+
+        private Reservation(long tokens) {
+            this.tokens = tokens;
+        }
+
+        void use(long cost) {
+            long requests = requestUsed ? 1 : 0;
+            requestUsed = true;
+            long covered = Math.min(cost, tokens);
+            tokens -= covered;
+            admitExempt(requests, cost - covered);
+        }
+    }
+
+    /**
+     * Bucket holding up to one minute of budget, refilled continuously. Reservations can take it
+     * below zero. Only used under the admission lock.
+     */
+    private static final class TokenBucket {
+
+        private final long capacity;
+        private final double perNano;
+        private double available;
+        private long refilledAt = System.nanoTime();
+
+        private TokenBucket(long perMinute) {
+            this.capacity = perMinute;
+            this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+        }
+
+        long nanosUntil(long amount, long now) {
+            refill(now);
+            double missing = Math.min(amount, capacity) - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / perNano);
+        }
+
+        void take(long amount, long now) {
+            refill(now);
+            available -= Math.min(amount, capacity);
+        }
+
+        private void refill(long now) {
+            available = Math.min(capacity, available + (now - refilledAt) * perNano);
+            refilledAt = now;
+        }
+    }
+}
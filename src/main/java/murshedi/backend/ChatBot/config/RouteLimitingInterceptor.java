@@ -0,0 +1,152 @@
+package murshedi.backend.ChatBot.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps concurrent exchanges per route (scheme + host + port) and records client metrics:
+ * <ul>
+ *   <li>{@code openai.http.client.requests} - timer per route, method and status</li>
+ *   <li>{@code openai.http.client.exchanges.active} - exchanges currently holding a slot</li>
+ *   <li>{@code openai.http.client.exchanges.queued} - callers waiting for a slot</li>
+ * </ul>
+ * A slot is held until the response is closed, so streamed bodies count against the limit.
+ * These count exchanges, not connections: the JDK client does not expose its connection pool,
+ * and one HTTP/2 connection can carry many exchanges.
+ */
+public class RouteLimitingInterceptor implements ClientHttpRequestInterceptor {
+
+    private final int maxPerRoute;
+    private final Duration acquireTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Semaphore> routes = new ConcurrentHashMap<>();
+
+    public RouteLimitingInterceptor(int maxPerRoute, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.maxPerRoute = maxPerRoute;
+        this.acquireTimeout = acquireTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String route = routeOf(request.getURI());
+        Semaphore permits = routes.computeIfAbsent(route, this::registerRoute);
+
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a connection slot to " + route);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a connection slot to " + route, e);
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            return new ReleasingResponse(response, () -> {
+                permits.release();
+                sample.stop(timer(route, request, statusOf(response)));
+            });
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            sample.stop(timer(route, request, "IO_ERROR"));
+            throw e;
+        }
+    }
+
+    private Semaphore registerRoute(String route) {
+        Semaphore permits = new Semaphore(maxPerRoute, true);
+        Gauge.builder("openai.http.client.exchanges.active", permits, p -> maxPerRoute - p.availablePermits())
+            .tag("route", route)
+            .register(meterRegistry);
+        Gauge.builder("openai.http.client.exchanges.queued", permits, Semaphore::getQueueLength)
+            .tag("route", route)
+            .register(meterRegistry);
+        return permits;
+    }
+
+    private Timer timer(String route, HttpRequest request, String status) {
+        return Timer.builder("openai.http.client.requests")
+            .tag("route", route)
+            .tag("method", request.getMethod().name())
+            .tag("status", status)
+            .register(meterRegistry);
+    }
+
+    private static String statusOf(ClientHttpResponse response) {
+        try {
+            return String.valueOf(response.getStatusCode().value());
+        } catch (IOException e) {
+            return "IO_ERROR";
+        }
+    }
+
+    private static String routeOf(URI uri) {
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Releases the route slot exactly once, when the response is closed.
+     */
+    private static final class ReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ReleasingResponse(ClientHttpResponse delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    onClose.run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package murshedi.backend.ChatBot.controller;
+
+import murshedi.backend.ChatBot.dto.AnswerCacheStatsDto;
+import murshedi.backend.ChatBot.service.AnswerCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Admin endpoints to inspect and flush the answer cache. Restricted to ADMIN in WebSecurityConfig.
+ */
+@RestController
+@RequestMapping("/api/admin/answer-cache")
+public class AnswerCacheController {
+
+    private final AnswerCache answerCache;
+
+    public AnswerCacheController(AnswerCache answerCache) {
+        this.answerCache = answerCache;
+    }
+
+    @GetMapping
+    public ResponseEntity<AnswerCacheStatsDto> getStats(@RequestParam(name = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok(answerCache.stats(limit));
+    }
+
+    /**
+     * Flush the whole cache, or only the entries for {@code question} when given.
+     */
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> flush(@RequestParam(name = "question", required = false) String question) {
+        if (question != null) {
+            return ResponseEntity.ok(Map.of("removed", answerCache.invalidate(question)));
+        }
+        int removed = answerCache.size();
+        answerCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("removed", removed));
+    }
+}
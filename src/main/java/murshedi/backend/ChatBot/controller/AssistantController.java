@@ -1,43 +1,136 @@
 package murshedi.backend.ChatBot.controller;
 
+import murshedi.backend.ChatBot.dto.AnswerStatus;
 import murshedi.backend.ChatBot.dto.AssistantRequestDto;
 import murshedi.backend.ChatBot.dto.AssistantResponseDto;
 import murshedi.backend.ChatBot.dto.FileUploadResponseDto;
+import murshedi.backend.ChatBot.resilience.AdaptiveLimiter;
 import murshedi.backend.ChatBot.service.AssistantService;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import murshedi.backend.ChatBot.service.AudioService;
+import murshedi.backend.ChatBot.service.BatchQuestionService;
+import murshedi.backend.ChatBot.service.IdempotencyStore;
+import murshedi.backend.ChatBot.service.RequestDeadline;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.net.URI;
+import java.security.Principal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api")
 public class AssistantController {
 
     private final AssistantService assistantService;
+    private final AudioService audioService;
+    private final IdempotencyStore idempotencyStore;
+    private final AdaptiveLimiter askLimiter;
+    private final BatchQuestionService batchQuestionService;
+    private final String audioCacheControl;
 
-    public AssistantController(AssistantService assistantService) {
+    public AssistantController(AssistantService assistantService, AudioService audioService,
+                               IdempotencyStore idempotencyStore,
+                               @Qualifier("askLimiter") AdaptiveLimiter askLimiter,
+                               BatchQuestionService batchQuestionService,
+                               @Value("${assistant.audio.cache-control:private, max-age=31536000, immutable}") String audioCacheControl) {
         this.assistantService = assistantService;
+        this.audioService = audioService;
+        this.idempotencyStore = idempotencyStore;
+        this.askLimiter = askLimiter;
+        this.batchQuestionService = batchQuestionService;
+        this.audioCacheControl = audioCacheControl;
     }
 
     /**
      * Endpoint to handle user questions to the AI assistant.
      * This replaces the Flask /ask endpoint.
+     * With {@code async=true} the question is answered in the background: the call returns
+     * 202 with a responseId right away and progress is polled through /assistant/response/{responseId}.
+     * Otherwise the answer is awaited up to {@code assistant.request-timeout}; past that the
+     * run is cancelled and 504 is returned.
+     * An Idempotency-Key header makes retries attach to, or replay, the original request.
+     * Questions beyond the adaptive admission limit are shed with 503 and Retry-After.
      */
     @PostMapping("/assistant/ask")
     @PreAuthorize("hasAuthority('ROLE_USER')")
-    public ResponseEntity<AssistantResponseDto> askQuestion(@RequestBody AssistantRequestDto requestDto) {
-        AssistantResponseDto response = assistantService.processQuestion(requestDto);
-        return ResponseEntity.ok(response);
+    public DeferredResult<ResponseEntity<AssistantResponseDto>> askQuestion(@RequestBody AssistantRequestDto requestDto,
+                                                                          @RequestParam(name = "async", defaultValue = "false") boolean async,
+                                                                          @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                                                          Principal principal) {
+        String scope = (async ? "assistant-ask-async:" : "assistant-ask:") + (principal != null ? principal.getName() : "");
+        String fingerprint = requestDto.getQuestion() + '\u0000' + requestDto.getThreadId() + '\u0000' + requestDto.getBlindMode();
+
+        if (async) {
+            // Replays the same 202 and responseId for a retried submission
+            CompletableFuture<ResponseEntity<AssistantResponseDto>> accepted = idempotencyStore.execute(
+                scope, idempotencyKey, fingerprint, () -> {
+                    // Background runs are bounded by the chat guard; only refuse new ones while
+                    // overloaded, so a retry of an accepted submission still gets its 202
+                    askLimiter.checkCapacity();
+                    AssistantResponseDto queued = assistantService.submitQuestion(requestDto);
+                    return CompletableFuture.completedFuture(ResponseEntity.accepted()
+                        .location(URI.create("/api/assistant/response/" + queued.getResponseId()))
+                        .body(queued));
+                });
+            DeferredResult<ResponseEntity<AssistantResponseDto>> result = new DeferredResult<>();
+            accepted.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.setResult(value);
+                } else {
+                    result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+            });
+            return result;
+        }
+        RequestDeadline deadline = assistantService.newDeadline();
+        // Retries attach to the original run without taking another admission slot
+        CompletableFuture<ResponseEntity<AssistantResponseDto>> answer = idempotencyStore.execute(
+            scope, idempotencyKey, fingerprint,
+            () -> askLimiter.execute(() -> assistantService.processQuestionAsync(requestDto, deadline).thenApply(ResponseEntity::ok),
+                () -> !deadline.isAnsweredFromCache()));
+        return DeferredResults.of(answer, idempotencyKey != null ? deadline.detached() : deadline);
+    }
+
+    /**
+     * Answer a list of questions in parallel, streaming one NDJSON line per question as it
+     * completes. Lines carry the question's index, since they arrive out of order.
+     */
+    @PostMapping(value = "/assistant/ask/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    public ResponseEntity<ResponseBodyEmitter> askBatch(@RequestBody List<AssistantRequestDto> questions) {
+        return ResponseEntity.ok()
+            .contentType(BatchQuestionService.NDJSON)
+            .body(batchQuestionService.answerAll(questions));
+    }
+
+    /**
+     * Stream the answer to a question as Server-Sent Events.
+     * Events: "meta" (threadId, responseId), "delta" (text), "done" (full response), "error".
+     */
+    @PostMapping(value = "/assistant/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    public ResponseEntity<SseEmitter> streamQuestion(@RequestBody AssistantRequestDto requestDto) {
+        if (requestDto.getQuestion() == null || requestDto.getQuestion().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(assistantService.streamQuestion(requestDto, Map.of(), null));
     }
 
     /**
@@ -48,12 +141,20 @@ public class AssistantController {
     @PreAuthorize("hasAuthority('ROLE_USER')")
     public ResponseEntity<AssistantResponseDto> getResponse(@PathVariable String responseId) {
         AssistantResponseDto response = assistantService.getResponse(responseId);
-        
-        // If audio is still processing, return appropriate status
-        if (response.getAudioFile() == null && response.getAnswer() != null) {
+
+        if (response.getStatus() == AnswerStatus.FAILED) {
+            return ResponseEntity.internalServerError().body(response);
+        }
+        if (response.getStatus() == AnswerStatus.TIMED_OUT) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(response);
+        }
+
+        // Still queued/running, or the answer is in but audio is still processing
+        boolean audioPending = response.getStatus() == AnswerStatus.ANSWERED && Boolean.TRUE.equals(response.getBlindMode());
+        if (response.getStatus() == AnswerStatus.QUEUED || response.getStatus() == AnswerStatus.RUNNING || audioPending) {
             return ResponseEntity.accepted().body(response);
         }
-        
+
         return ResponseEntity.ok(response);
     }
 
@@ -75,25 +176,47 @@ public class AssistantController {
     /**
      * Stream audio file for playback.
      * This replaces the Flask /audio/<filename> endpoint.
+     * Supports Range requests for seeking and conditional requests on a strong ETag of the
+     * file's content; audio files never change, so clients may cache them for long.
      */
     @GetMapping("/audio/{filename}")
-    public ResponseEntity<Resource> getAudio(@PathVariable String filename) {
+    public void getAudio(@PathVariable String filename, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        File file;
+        String contentHash;
         try {
-            Path path = Paths.get(filename);
-            File file = path.toFile();
-            
-            if (!file.exists()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Resource resource = new FileSystemResource(file);
-            
-            return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("audio/mpeg"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
-                .body(resource);
+            file = audioService.resolveAudioFile(filename);
+            contentHash = file != null ? audioService.getContentHash(file) : null;
         } catch (Exception e) {
+            file = null;
+            contentHash = null;
+        }
+        if (file == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        AudioFileResponses.send(file, contentHash, audioCacheControl, request, response);
+    }
+
+    /**
+     * Audio of an answer as a progressive MP3 stream that starts while speech is still being
+     * synthesized, or the stored audio once it is done. Sent chunked, through a small buffer,
+     * so no file is held in memory, and no thread is held while waiting for more audio.
+     */
+    @GetMapping("/audio/{responseId}/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamAudio(@PathVariable String responseId) {
+        ResponseBodyEmitter body = audioService.openAudioStream(responseId);
+        if (body == null) {
+            body = assistantService.findAudioFile(responseId)
+                .map(audioService::openAudioFileStream)
+                .orElse(null);
+        }
+        if (body == null) {
             return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("audio/mpeg"))
+            .header(HttpHeaders.CACHE_CONTROL, "no-store")
+            .body(body);
     }
 }
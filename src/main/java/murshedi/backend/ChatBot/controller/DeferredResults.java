@@ -0,0 +1,40 @@
+package murshedi.backend.ChatBot.controller;
+
+import murshedi.backend.ChatBot.service.AssistantTimeoutException;
+import murshedi.backend.ChatBot.service.RequestDeadline;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Adapts a pipeline future to a {@link DeferredResult} tied to the request's
+ * {@link RequestDeadline}: the async request times out just after the deadline, and a client
+ * disconnect cancels the deadline so the OpenAI run is cancelled too.
+ */
+public final class DeferredResults {
+
+    // Lets the pipeline report its own timeout before the servlet container gives up
+    private static final long GRACE_MS = 5_000;
+
+    private DeferredResults() {
+    }
+
+    public static <T> DeferredResult<T> of(CompletableFuture<T> future, RequestDeadline deadline) {
+        DeferredResult<T> result = new DeferredResult<>(deadline.remaining().toMillis() + GRACE_MS);
+        result.onTimeout(() -> {
+            deadline.cancel();
+            result.setErrorResult(new AssistantTimeoutException("The assistant did not answer in time"));
+        });
+        result.onError(error -> deadline.cancel());
+
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.setResult(value);
+            } else {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,25 @@
+package murshedi.backend.ChatBot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnswerCacheStatsDto {
+    private boolean enabled;
+    private int size;
+    private int maxSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private List<Entry> entries;
+
+    public record Entry(String question, String knowledgeBaseVersion, long ageSeconds, long hits) {
+    }
+}
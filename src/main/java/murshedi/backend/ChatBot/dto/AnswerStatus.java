@@ -0,0 +1,20 @@
+package murshedi.backend.ChatBot.dto;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Progress of a question, as reported by /api/assistant/response/{responseId}.
+ */
+public enum AnswerStatus {
+    QUEUED,
+    RUNNING,
+    ANSWERED,
+    AUDIO_READY,
+    FAILED,
+    TIMED_OUT;
+
+    @JsonValue
+    public String toJson() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -11,4 +11,6 @@ public class AssistantRequestDto {
     private String question;
     private Boolean blindMode = false;
     private String threadId;
+    // Newest message already seen on threadId; only messages after it are fetched
+    private String afterMessageId;
 }
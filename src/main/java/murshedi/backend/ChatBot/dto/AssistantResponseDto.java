@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,5 +15,10 @@ public class AssistantResponseDto {
     private String answer;
     private String responseId;
     private String audioFile;
+    private List<String> audioParts;
     private String threadId;
+    private String messageId;
+    private AnswerStatus status;
+    private Boolean blindMode;
+    private String error;
 }
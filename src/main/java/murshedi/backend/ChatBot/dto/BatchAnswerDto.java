@@ -0,0 +1,22 @@
+package murshedi.backend.ChatBot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a batch answer stream. {@code index} is the question's position in the request;
+ * {@code status} is the HTTP status the question would have had on its own.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchAnswerDto {
+    private int index;
+    private String question;
+    private int status;
+    private AssistantResponseDto response;
+    private String error;
+}
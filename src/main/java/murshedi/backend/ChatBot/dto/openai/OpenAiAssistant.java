@@ -0,0 +1,41 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/**
+ * Assistant object returned by /v1/assistants/{assistant_id}. Only the file search
+ * vector store IDs are mapped.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record OpenAiAssistant(String id, ToolResources toolResources) {
+
+    /**
+     * The first vector store attached for file search, or null if there is none.
+     */
+    public String primaryVectorStoreId() {
+        if (toolResources != null && toolResources.fileSearch() != null) {
+            List<String> vectorStoreIds = toolResources.fileSearch().vectorStoreIds();
+            if (vectorStoreIds != null && !vectorStoreIds.isEmpty()) {
+                return vectorStoreIds.get(0);
+            }
+        }
+        return null;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record ToolResources(FileSearch fileSearch) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record FileSearch(List<String> vectorStoreIds) {
+    }
+}
@@ -0,0 +1,20 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Chat completion returned by /v1/chat/completions.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenAiChatCompletion(List<Choice> choices) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Choice(Message message) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Message(String role, String content) {
+    }
+}
@@ -0,0 +1,10 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * File object returned by /v1/files and /v1/vector_stores/{vector_store_id}/files.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenAiFile(String id) {
+}
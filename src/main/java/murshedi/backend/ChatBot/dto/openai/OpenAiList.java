@@ -0,0 +1,15 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/**
+ * Paginated list wrapper used by the OpenAI list endpoints.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record OpenAiList<T>(List<T> data, String firstId, String lastId, boolean hasMore) {
+}
@@ -0,0 +1,24 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/**
+ * Message object returned by /v1/threads/{thread_id}/messages.
+ * Only text content is mapped; other content types decode with a null {@code text}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record OpenAiMessage(String id, String role, String runId, List<Content> content) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Content(String type, Text text) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Text(String value) {
+    }
+}
@@ -0,0 +1,16 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Payload of a "thread.message.delta" event in a streamed run.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenAiMessageDelta(String id, Delta delta) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Delta(List<OpenAiMessage.Content> content) {
+    }
+}
@@ -0,0 +1,56 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/**
+ * Request bodies sent to the OpenAI Assistants API, plus the chat completion used for summaries.
+ */
+public final class OpenAiRequests {
+
+    private OpenAiRequests() {
+    }
+
+    public record CreateMessage(String role, String content) {
+
+        public static CreateMessage user(String content) {
+            return new CreateMessage("user", content);
+        }
+
+        public static CreateMessage system(String content) {
+            return new CreateMessage("system", content);
+        }
+
+        public static CreateMessage assistant(String content) {
+            return new CreateMessage("assistant", content);
+        }
+    }
+
+    public record CreateThread(List<CreateMessage> messages) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record CreateRun(String assistantId, Boolean stream) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record CreateThreadAndRun(String assistantId, CreateThread thread, Boolean stream) {
+    }
+
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record CreateChatCompletion(String model, List<CreateMessage> messages, Integer maxTokens) {
+    }
+
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record CreateVectorStore(List<String> fileIds) {
+    }
+
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public record UpdateAssistant(OpenAiAssistant.ToolResources toolResources) {
+    }
+}
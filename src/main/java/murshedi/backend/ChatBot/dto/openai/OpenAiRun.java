@@ -0,0 +1,17 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/**
+ * Run object returned by /v1/threads/{thread_id}/runs and /v1/threads/runs.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record OpenAiRun(String id, String threadId, String status, LastError lastError) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record LastError(String code, String message) {
+    }
+}
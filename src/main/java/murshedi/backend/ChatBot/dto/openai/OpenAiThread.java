@@ -0,0 +1,10 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Thread object returned by /v1/threads.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenAiThread(String id) {
+}
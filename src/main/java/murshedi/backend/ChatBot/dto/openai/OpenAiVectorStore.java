@@ -0,0 +1,10 @@
+package murshedi.backend.ChatBot.dto.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Vector store object returned by /v1/vector_stores.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenAiVectorStore(String id) {
+}
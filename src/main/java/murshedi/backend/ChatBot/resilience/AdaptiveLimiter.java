@@ -0,0 +1,211 @@
+package murshedi.backend.ChatBot.resilience;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Admission control with a concurrency limit that follows observed latency, after the gradient
+ * limit of Netflix's concurrency-limits. A short and a long moving average of request latency
+ * are kept; while the short one stays near the long one the limit grows by about its square
+ * root per sample, and when latency climbs the limit shrinks by the ratio between them.
+ * Overload outcomes (429, 503, 504, timeouts) cut the limit by 10%. Requests answered without
+ * the constrained backend, such as cache hits, hold a slot but are not latency samples, since
+ * their speed says nothing about its capacity.
+ * <p>
+ * Requests over the limit are not queued: they fail at once with
+ * {@link FeatureUnavailableException}, with a Retry-After of about one typical request.
+ */
+public class AdaptiveLimiter {
+
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final Duration MIN_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(30);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+
+    private final Object lock = new Object();
+    private double limit;
+    private int inFlight;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                           double smoothing, double tolerance, MeterRegistry meterRegistry) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        Gauge.builder("assistant.admission.limit", this, AdaptiveLimiter::getLimit).tag("endpoint", name).register(meterRegistry);
+        Gauge.builder("assistant.admission.in_flight", this, AdaptiveLimiter::getInFlight).tag("endpoint", name).register(meterRegistry);
+        FunctionCounter.builder("assistant.admission.rejected", rejected, AtomicLong::get).tag("endpoint", name).register(meterRegistry);
+    }
+
+    /**
+     * Run {@code task} if the limit allows another request, holding the slot until the returned
+     * future completes. Throws {@link FeatureUnavailableException} right away otherwise.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> task) {
+        return execute(task, () -> true);
+    }
+
+    /**
+     * Like {@link #execute(Supplier)}, but a successful request only feeds the latency average if
+     * {@code sampled} is true once it completes.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> task, BooleanSupplier sampled) {
+        acquire();
+        long start = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = task.get();
+        } catch (RuntimeException e) {
+            release(0, false, e);
+            throw e;
+        }
+        return result.whenComplete((value, error) -> release(System.nanoTime() - start, sampled.getAsBoolean(), error));
+    }
+
+    /**
+     * Throw {@link FeatureUnavailableException} if a request would currently be shed, for work
+     * that is admitted without holding a slot.
+     */
+    public void checkCapacity() {
+        synchronized (lock) {
+            if (inFlight < (int) limit) {
+                return;
+            }
+        }
+        throw shed();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        synchronized (lock) {
+            return (int) limit;
+        }
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    /**
+     * Current state, as exposed through the actuator endpoint.
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        synchronized (lock) {
+            details.put("limit", (int) limit);
+            details.put("inFlight", inFlight);
+            details.put("shortRttMillis", Math.round(shortRttNanos / 1e6));
+            details.put("longRttMillis", Math.round(longRttNanos / 1e6));
+        }
+        details.put("rejected", rejected.get());
+        return details;
+    }
+
+    private void acquire() {
+        synchronized (lock) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+        }
+        throw shed();
+    }
+
+    private void release(long rttNanos, boolean sampled, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        synchronized (lock) {
+            int inFlightAtRelease = inFlight--;
+            if (cause == null) {
+                if (sampled) {
+                    onSample(rttNanos, inFlightAtRelease);
+                }
+            } else if (isOverload(cause)) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            }
+            // Other failures (validation, cancellation, 4xx) say nothing about capacity
+        }
+    }
+
+    // Caller holds the lock
+    private void onSample(long rttNanos, int inFlightAtRelease) {
+        shortRttNanos = shortRttNanos == 0 ? rttNanos : shortRttNanos + (rttNanos - shortRttNanos) * SHORT_ALPHA;
+        longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) * LONG_ALPHA;
+        // Let the baseline follow a lasting drop in latency instead of over-admitting against a stale one
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (shortRttNanos <= 0) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        // Only grow while the limit is actually being used
+        if (newLimit > limit && inFlightAtRelease * 2 < limit) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+    }
+
+    private static boolean isOverload(Throwable cause) {
+        if (cause instanceof TimeoutException) {
+            return true;
+        }
+        if (cause instanceof ResponseStatusException e) {
+            int status = e.getStatusCode().value();
+            return status == HttpStatus.TOO_MANY_REQUESTS.value()
+                || status == HttpStatus.SERVICE_UNAVAILABLE.value()
+                || status == HttpStatus.GATEWAY_TIMEOUT.value();
+        }
+        return false;
+    }
+
+    private FeatureUnavailableException shed() {
+        rejected.incrementAndGet();
+        Duration retryAfter;
+        synchronized (lock) {
+            retryAfter = Duration.ofNanos((long) longRttNanos);
+        }
+        if (retryAfter.compareTo(MIN_RETRY_AFTER) < 0) {
+            retryAfter = MIN_RETRY_AFTER;
+        } else if (retryAfter.compareTo(MAX_RETRY_AFTER) > 0) {
+            retryAfter = MAX_RETRY_AFTER;
+        }
+        return new FeatureUnavailableException(name + " is overloaded, retry later", retryAfter);
+    }
+}
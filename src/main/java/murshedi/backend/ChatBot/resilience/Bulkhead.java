@@ -0,0 +1,114 @@
+package murshedi.backend.ChatBot.resilience;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps concurrent calls of one feature. Callers over the cap wait in a bounded FIFO queue for
+ * at most {@code maxWait}; a full queue or an expired wait fails with
+ * {@link FeatureUnavailableException}. Permits are handed out as futures, so asynchronous
+ * callers never block a thread while queued.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final Duration maxWait;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+    private int active;
+
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, Duration maxWait) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * A future completed once the caller holds a permit. Every successful acquire must be
+     * followed by exactly one {@link #release()}.
+     */
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> ticket;
+        synchronized (lock) {
+            if (active < maxConcurrent) {
+                active++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (queue.size() >= queueCapacity) {
+                rejectedQueueFull.incrementAndGet();
+                return CompletableFuture.failedFuture(
+                    new FeatureUnavailableException(name + " is at capacity, retry later", maxWait));
+            }
+            ticket = new CompletableFuture<>();
+            queue.add(ticket);
+        }
+
+        CompletableFuture.delayedExecutor(maxWait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (ticket.completeExceptionally(new FeatureUnavailableException(name + " is at capacity, retry later", maxWait))) {
+                rejectedTimeout.incrementAndGet();
+                synchronized (lock) {
+                    queue.remove(ticket);
+                }
+            }
+        });
+        return ticket;
+    }
+
+    /**
+     * Hand the permit to the next waiting caller, or return it.
+     */
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (lock) {
+                next = queue.poll();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            // Completed outside the lock: the waiter's continuation may run on this thread
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    public int getActive() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getRejectedQueueFull() {
+        return rejectedQueueFull.get();
+    }
+
+    public long getRejectedTimeout() {
+        return rejectedTimeout.get();
+    }
+}
@@ -0,0 +1,140 @@
+package murshedi.backend.ChatBot.resilience;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.config.OpenAiRateLimitException;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Isolates one feature (chat runs, speech synthesis, file ingestion) behind its own
+ * {@link Bulkhead} and {@link CircuitBreaker}, so a degraded or saturated feature fails fast
+ * instead of holding threads and connections the others need.
+ * <p>
+ * Validation errors, our own 429/503 rejections, 4xx answers from OpenAI, client disconnects
+ * and cancellations are not counted as failures; timeouts are.
+ */
+public class FeatureGuard {
+
+    private final String name;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    public FeatureGuard(String name, Bulkhead bulkhead, CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+
+        Gauge.builder("assistant.guard.active", bulkhead, Bulkhead::getActive).tag("feature", name).register(meterRegistry);
+        Gauge.builder("assistant.guard.queued", bulkhead, Bulkhead::getQueued).tag("feature", name).register(meterRegistry);
+        Gauge.builder("assistant.guard.circuit_state", circuitBreaker, cb -> cb.getState().ordinal())
+            .description("0 = closed, 1 = open, 2 = half-open")
+            .tag("feature", name)
+            .register(meterRegistry);
+        FunctionCounter.builder("assistant.guard.rejected", bulkhead, Bulkhead::getRejectedQueueFull)
+            .tag("feature", name).tag("reason", "queue_full").register(meterRegistry);
+        FunctionCounter.builder("assistant.guard.rejected", bulkhead, Bulkhead::getRejectedTimeout)
+            .tag("feature", name).tag("reason", "queue_timeout").register(meterRegistry);
+        FunctionCounter.builder("assistant.guard.rejected", circuitBreaker, CircuitBreaker::getRejected)
+            .tag("feature", name).tag("reason", "circuit_open").register(meterRegistry);
+    }
+
+    /**
+     * Run an asynchronous task once a permit is available. The permit is held until the
+     * returned future completes.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> task) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(circuitOpen());
+        }
+        CompletableFuture<Void> permit = bulkhead.acquire();
+        permit.exceptionally(e -> {
+            circuitBreaker.onIgnored();
+            return null;
+        });
+        return permit.thenCompose(ignored -> {
+            CompletableFuture<T> result;
+            try {
+                result = task.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, error) -> {
+                bulkhead.release();
+                record(error);
+            });
+        });
+    }
+
+    /**
+     * Run a blocking task on the calling thread, waiting in the bulkhead queue if needed.
+     */
+    public <T> T call(Supplier<T> task) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw circuitOpen();
+        }
+        try {
+            bulkhead.acquire().join();
+        } catch (CompletionException e) {
+            circuitBreaker.onIgnored();
+            throw (RuntimeException) e.getCause();
+        }
+        try {
+            T result = task.get();
+            record(null);
+            return result;
+        } catch (RuntimeException e) {
+            record(e);
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Current state, as exposed through the actuator endpoint.
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("circuit", circuitBreaker.getState());
+        details.put("failureRate", circuitBreaker.getFailureRate());
+        details.put("retryAfterSeconds", circuitBreaker.remainingOpen().toSeconds());
+        details.put("active", bulkhead.getActive());
+        details.put("maxConcurrent", bulkhead.getMaxConcurrent());
+        details.put("queued", bulkhead.getQueued());
+        details.put("queueCapacity", bulkhead.getQueueCapacity());
+        return details;
+    }
+
+    private FeatureUnavailableException circuitOpen() {
+        return new FeatureUnavailableException(name + " is temporarily unavailable", circuitBreaker.remainingOpen());
+    }
+
+    private void record(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause == null) {
+            circuitBreaker.onSuccess();
+        } else if (cause instanceof IllegalArgumentException
+                || cause instanceof OpenAiRateLimitException
+                || cause instanceof FeatureUnavailableException
+                || cause instanceof HttpClientErrorException
+                || cause instanceof UncheckedIOException
+                || cause instanceof CancellationException) {
+            circuitBreaker.onIgnored();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package murshedi.backend.ChatBot.resilience;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/featureguards) listing bulkhead and circuit breaker state per
+ * feature, and the admission limits in front of them.
+ */
+@Component
+@Endpoint(id = "featureguards")
+public class FeatureGuardsEndpoint {
+
+    private final List<FeatureGuard> guards;
+    private final List<AdaptiveLimiter> limiters;
+
+    public FeatureGuardsEndpoint(List<FeatureGuard> guards, List<AdaptiveLimiter> limiters) {
+        this.guards = guards;
+        this.limiters = limiters;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> guards() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (FeatureGuard guard : guards) {
+            result.put(guard.getName(), guard.describe());
+        }
+        for (AdaptiveLimiter limiter : limiters) {
+            result.put("admission." + limiter.getName(), limiter.describe());
+        }
+        return result;
+    }
+}
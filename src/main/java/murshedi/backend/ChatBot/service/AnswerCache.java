@@ -0,0 +1,162 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.dto.AnswerCacheStatsDto;
+import murshedi.backend.ChatBot.util.TextUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact-match cache of first-turn answers, keyed on the normalized question and the
+ * knowledge-base version (vector store ID), so re-uploading files never serves stale answers.
+ * Least recently used entries are evicted once {@code max-size} is reached, and entries older
+ * than {@code ttl} are dropped.
+ */
+@Component
+public class AnswerCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AnswerCache(MeterRegistry meterRegistry,
+                       @Value("${assistant.answer-cache.enabled:true}") boolean enabled,
+                       @Value("${assistant.answer-cache.max-size:2000}") int maxSize,
+                       @Value("${assistant.answer-cache.ttl:24h}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+
+        Gauge.builder("assistant.answer_cache.size", this, AnswerCache::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.answer_cache.lookups", hits, AtomicLong::get).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("assistant.answer_cache.lookups", misses, AtomicLong::get).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("assistant.answer_cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+    }
+
+    public Optional<String> get(String question, String knowledgeBaseVersion) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = key(question, knowledgeBaseVersion);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.createdAtMillis <= ttlMillis) {
+                entry.hits.incrementAndGet();
+                hits.incrementAndGet();
+                return Optional.of(entry.answer);
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String question, String knowledgeBaseVersion, String answer) {
+        if (!enabled || answer == null || answer.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(question, knowledgeBaseVersion, answer, System.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(key(question, knowledgeBaseVersion), entry);
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop every cached answer for {@code question}, across knowledge-base versions.
+     *
+     * @return the number of entries removed
+     */
+    public int invalidate(String question) {
+        String normalized = TextUtils.normalizeQuestion(question);
+        synchronized (entries) {
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.normalizedQuestion.equals(normalized));
+            return before - entries.size();
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Counters plus up to {@code limit} entries, most recently used first.
+     */
+    public AnswerCacheStatsDto stats(int limit) {
+        long now = System.currentTimeMillis();
+        List<AnswerCacheStatsDto.Entry> listed = new ArrayList<>();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+            List<Entry> ordered = new ArrayList<>(entries.values());
+            for (int i = ordered.size() - 1; i >= 0 && listed.size() < limit; i--) {
+                Entry entry = ordered.get(i);
+                listed.add(new AnswerCacheStatsDto.Entry(
+                    entry.question, entry.knowledgeBaseVersion, (now - entry.createdAtMillis) / 1000, entry.hits.get()));
+            }
+        }
+        return AnswerCacheStatsDto.builder()
+            .enabled(enabled)
+            .size(size)
+            .maxSize(maxSize)
+            .hits(hits.get())
+            .misses(misses.get())
+            .evictions(evictions.get())
+            .entries(listed)
+            .build();
+    }
+
+    private static String key(String question, String knowledgeBaseVersion) {
+        return knowledgeBaseVersion + '\u0000' + TextUtils.normalizeQuestion(question);
+    }
+
+    private static final class Entry {
+        private final String question;
+        private final String normalizedQuestion;
+        private final String knowledgeBaseVersion;
+        private final String answer;
+        private final long createdAtMillis;
+        private final AtomicLong hits = new AtomicLong();
+
+        private Entry(String question, String knowledgeBaseVersion, String answer, long createdAtMillis) {
+            this.question = question;
+            this.normalizedQuestion = TextUtils.normalizeQuestion(question);
+            this.knowledgeBaseVersion = knowledgeBaseVersion;
+            this.answer = answer;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+}
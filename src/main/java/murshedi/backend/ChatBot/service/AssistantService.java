@@ -1,147 +1,458 @@
 // src/main/java/murshedi/backend/ChatBot/service/AssistantService.java
 package murshedi.backend.ChatBot.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.theokanning.openai.OpenAiHttpException;
-import com.theokanning.openai.service.OpenAiService;
 import murshedi.backend.ChatBot.config.OpenAiConfig;
+import murshedi.backend.ChatBot.config.OpenAiRateLimiter;
+import murshedi.backend.ChatBot.dto.AnswerStatus;
 import murshedi.backend.ChatBot.dto.AssistantRequestDto;
 import murshedi.backend.ChatBot.dto.AssistantResponseDto;
 import murshedi.backend.ChatBot.dto.FileUploadResponseDto;
+import murshedi.backend.ChatBot.dto.openai.OpenAiAssistant;
+import murshedi.backend.ChatBot.dto.openai.OpenAiFile;
+import murshedi.backend.ChatBot.dto.openai.OpenAiMessage;
+import murshedi.backend.ChatBot.dto.openai.OpenAiRun;
+import murshedi.backend.ChatBot.resilience.FeatureGuard;
+import murshedi.backend.ChatBot.util.StreamingTextCleaner;
 import murshedi.backend.ChatBot.util.TextUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 public class AssistantService {
 
     private static final Logger logger = LoggerFactory.getLogger(AssistantService.class);
-    private static final String OPENAI_API_BASE_URL = "https://api.openai.com/v1";
+    private static final long STREAM_TIMEOUT_MS = 5 * 60 * 1000L;
+    private static final int RUN_MESSAGE_LIMIT = 5;
+    private static final String FAILED_MESSAGE = "Failed to process question";
 
-    private final OpenAiService openAiService;
     private final OpenAiConfig openAiConfig;
-    private final RestTemplate restTemplate;
+    private final OpenAiAssistantClient openAiClient;
+    private final OpenAiRateLimiter rateLimiter;
+    private final RunStatusPoller runStatusPoller;
+    private final ResponseStore responseStore;
     private final AudioService audioService;
-    private final ObjectMapper objectMapper;
-    private final Map<String, Map<String, Object>> responses = new ConcurrentHashMap<>();
-    private final Map<String, String> threads = new ConcurrentHashMap<>();
-
-    public AssistantService(OpenAiService openAiService,
-                            OpenAiConfig openAiConfig,
-                            RestTemplate restTemplate,
+    private final AnswerCache answerCache;
+    private final SimilarQuestionIndex similarQuestions;
+    private final InFlightQuestions inFlightQuestions;
+    private final ThreadRunSerializer threadRuns;
+    private final FeatureGuard chatGuard;
+    private final FeatureGuard filesGuard;
+    private final KnowledgeBaseVersion knowledgeBaseVersion;
+    private final Executor executor;
+    private final Executor streamingExecutor;
+    private final Duration requestTimeout;
+
+    public AssistantService(OpenAiConfig openAiConfig,
+                            OpenAiAssistantClient openAiClient,
+                            OpenAiRateLimiter rateLimiter,
+                            RunStatusPoller runStatusPoller,
+                            ResponseStore responseStore,
                             AudioService audioService,
-                            ObjectMapper objectMapper) {
-        this.openAiService = openAiService;
+                            AnswerCache answerCache,
+                            SimilarQuestionIndex similarQuestions,
+                            InFlightQuestions inFlightQuestions,
+                            ThreadRunSerializer threadRuns,
+                            @Qualifier("chatGuard") FeatureGuard chatGuard,
+                            @Qualifier("filesGuard") FeatureGuard filesGuard,
+                            KnowledgeBaseVersion knowledgeBaseVersion,
+                            @Qualifier("assistantExecutor") Executor executor,
+                            @Qualifier("streamingExecutor") Executor streamingExecutor,
+                            @Value("${assistant.request-timeout:90s}") Duration requestTimeout) {
         this.openAiConfig = openAiConfig;
-        this.restTemplate = restTemplate;
+        this.openAiClient = openAiClient;
+        this.rateLimiter = rateLimiter;
+        this.runStatusPoller = runStatusPoller;
+        this.responseStore = responseStore;
         this.audioService = audioService;
-        this.objectMapper = objectMapper;
+        this.answerCache = answerCache;
+        this.similarQuestions = similarQuestions;
+        this.inFlightQuestions = inFlightQuestions;
+        this.threadRuns = threadRuns;
+        this.chatGuard = chatGuard;
+        this.filesGuard = filesGuard;
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+        this.executor = executor;
+        this.streamingExecutor = streamingExecutor;
+        this.requestTimeout = requestTimeout;
     }
 
     /**
      * Process a question using OpenAI's Assistant API.
+     * Blocks the caller; prefer {@link #processQuestionAsync} from request handlers.
      */
     public AssistantResponseDto processQuestion(AssistantRequestDto requestDto) {
         try {
-            String userQuestion = requestDto.getQuestion();
-            boolean blindMode = Boolean.TRUE.equals(requestDto.getBlindMode());
-            String threadId = requestDto.getThreadId();
-
-            if (userQuestion == null || userQuestion.isEmpty()) {
-                throw new IllegalArgumentException("No question provided");
+            return processQuestionAsync(requestDto, newDeadline()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
+        }
+    }
 
-            logger.info("Processing question. Thread ID: {}, Blind Mode: {}", threadId, blindMode);
+    /**
+     * A deadline of {@code assistant.request-timeout} from now, for callers of {@link #processQuestionAsync}.
+     */
+    public RequestDeadline newDeadline() {
+        return RequestDeadline.after(requestTimeout);
+    }
 
-            Map<String, Object> threadResponse;
-            if (threadId == null || threadId.isEmpty()) {
-                threadResponse = createThread(userQuestion);
-                threadId = (String) threadResponse.get("id");
-            } else {
-                addMessageToThread(threadId, userQuestion);
-            }
+    /**
+     * Process a question without holding the calling thread while the run is in progress.
+     * Run status is tracked by the shared {@link RunStatusPoller}. If {@code deadline} passes or
+     * is cancelled first, the OpenAI run is cancelled and the future fails.
+     */
+    public CompletableFuture<AssistantResponseDto> processQuestionAsync(AssistantRequestDto requestDto,
+                                                                        RequestDeadline deadline) {
+        validateQuestion(requestDto);
+        return runQuestion(requestDto, audioService.generateResponseId(), deadline);
+    }
 
-            Map<String, Object> runResponse = runThread(threadId);
-            String runId = (String) runResponse.get("id");
+    /**
+     * Accept a question and answer it in the background. The returned DTO only carries the
+     * response ID and the "queued" status; progress is read through {@link #getResponse}.
+     */
+    public AssistantResponseDto submitQuestion(AssistantRequestDto requestDto) {
+        validateQuestion(requestDto);
+        String responseId = audioService.generateResponseId();
+        runQuestion(requestDto, responseId, newDeadline());
+        return AssistantResponseDto.builder()
+            .responseId(responseId)
+            .threadId(requestDto.getThreadId())
+            .status(AnswerStatus.QUEUED)
+            .blindMode(Boolean.TRUE.equals(requestDto.getBlindMode()))
+            .build();
+    }
+
+    private void validateQuestion(AssistantRequestDto requestDto) {
+        String userQuestion = requestDto.getQuestion();
+        if (userQuestion == null || userQuestion.isEmpty()) {
+            throw new IllegalArgumentException("No question provided");
+        }
+    }
+
+    private CompletableFuture<AssistantResponseDto> runQuestion(AssistantRequestDto requestDto, String responseId,
+                                                                RequestDeadline deadline) {
+        String userQuestion = requestDto.getQuestion();
+        boolean blindMode = Boolean.TRUE.equals(requestDto.getBlindMode());
+
+        logger.info("Processing question. Thread ID: {}, Blind Mode: {}", requestDto.getThreadId(), blindMode);
 
-            // Poll until completion
-            while (true) {
-                Map<String, Object> runStatus = getRunStatus(threadId, runId);
-                String status = (String) runStatus.get("status");
-                logger.info("Run Status: {}", status);
+        StoredResponse entry = new StoredResponse(responseId, AnswerStatus.QUEUED, blindMode);
+        responseStore.put(entry);
 
-                if ("completed".equals(status)) {
-                    break;
-                } else if ("failed".equals(status)) {
-                    throw new RuntimeException("Assistant run failed: " + runStatus.get("last_error"));
+        boolean firstTurn = requestDto.getThreadId() == null || requestDto.getThreadId().isEmpty();
+        if (!firstTurn) {
+            return askAssistant(requestDto, entry, deadline)
+                .thenComposeAsync(answer -> completeResponse(entry, answer), executor)
+                .exceptionally(e -> failResponse(entry, e));
+        }
+
+        // First-turn questions are answered from the cache when the knowledge base hasn't changed
+        return CompletableFuture
+            .supplyAsync(knowledgeBaseVersion::current, executor)
+            .thenCompose(version -> {
+                Optional<String> cached = answerCache.get(userQuestion, version);
+                if (cached.isEmpty()) {
+                    // Fall back to the saved answer of a near-duplicate question
+                    cached = similarQuestions.findAnswer(userQuestion, version);
+                    cached.ifPresent(answer -> answerCache.put(userQuestion, version, answer));
                 }
+                if (cached.isPresent()) {
+                    logger.info("Answer cache hit for response {}", responseId);
+                    deadline.markAnsweredFromCache();
+                    // No thread is created for a cached answer; ThreadCompactor seeds one with
+                    // this turn when the conversation continues
+                    return completeResponse(entry, RunAnswer.of(cached.get()));
+                }
+
+                entry.setStatus(AnswerStatus.RUNNING);
+                // The shared run is only cancelled once every caller waiting on it has gone away
+                return inFlightQuestions
+                    .answer(userQuestion, version, deadline, sharedDeadline -> askAssistant(requestDto, entry, sharedDeadline)
+                        .thenApply(answer -> {
+                            answerCache.put(userQuestion, version, answer.text());
+                            return answer;
+                        }))
+                    .thenComposeAsync(answer -> completeResponse(entry, answer), executor);
+            })
+            .exceptionally(e -> failResponse(entry, e));
+    }
+
+    private CompletableFuture<RunAnswer> askAssistant(AssistantRequestDto requestDto, StoredResponse entry,
+                                                      RequestDeadline deadline) {
+        String threadId = requestDto.getThreadId();
+        if (threadId == null || threadId.isEmpty()) {
+            return runAssistant(requestDto, entry, deadline);
+        }
+        // One active run per thread: later messages wait here without holding a chat permit
+        return threadRuns.submit(threadId, () -> runAssistant(requestDto, entry, deadline));
+    }
 
-                Thread.sleep(1000);
+    private CompletableFuture<RunAnswer> runAssistant(AssistantRequestDto requestDto, StoredResponse entry,
+                                                      RequestDeadline deadline) {
+        String userQuestion = requestDto.getQuestion();
+        // Each OpenAI call waits for rate limit capacity without holding an executor thread
+        return chatGuard.execute(() -> rateLimiter
+            .supplyWhenAdmitted(rateLimiter.runTokensFor(userQuestion), () -> {
+                // The time may already be up after waiting for the thread, a chat permit or capacity
+                deadline.check();
+                entry.setStatus(AnswerStatus.RUNNING);
+                return startRun(userQuestion, requestDto.getThreadId());
+            }, executor)
+            .thenCompose(run -> runStatusPoller.awaitCompletion(run.threadId(), run.runId(), deadline)
+                .thenApply(status -> run))
+            .thenCompose(run -> rateLimiter.supplyWhenAdmitted(1, () -> {
+                // Extract the assistant's reply from the messages of this run only
+                List<OpenAiMessage> messages = openAiClient.getRunMessages(run.threadId(), run.runId(),
+                    requestDto.getAfterMessageId(), RUN_MESSAGE_LIMIT);
+                OpenAiMessage reply = findLatestAssistantMessage(messages, run.runId());
+                String assistantMessage = TextUtils.cleanText(extractText(reply));
+                return new RunAnswer(run.threadId(), reply != null ? reply.id() : null, assistantMessage);
+            }, executor)));
+    }
+
+    private AssistantResponseDto failResponse(StoredResponse entry, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        logger.error("Error processing question", cause);
+        entry.setStatus(cause instanceof AssistantTimeoutException ? AnswerStatus.TIMED_OUT : AnswerStatus.FAILED);
+        entry.setError(clientMessage(cause));
+        responseStore.put(entry);
+        if (cause instanceof ResponseStatusException statusException) {
+            // Rate limiting (429), unavailable features (503) and timeouts (504) keep their status
+            throw statusException;
+        }
+        throw new RuntimeException(FAILED_MESSAGE, cause);
+    }
+
+    /**
+     * The error shown to clients for a failed question. Reasons of the status exceptions this
+     * service raises itself are passed through; any other message may carry OpenAI responses or
+     * library internals, so it is only logged.
+     */
+    private static String clientMessage(Throwable cause) {
+        if (cause instanceof ResponseStatusException statusException && statusException.getReason() != null) {
+            return statusException.getReason();
+        }
+        return FAILED_MESSAGE;
+    }
+
+    private StartedRun startRun(String userQuestion, String threadId) {
+        if (threadId == null || threadId.isEmpty()) {
+            OpenAiRun run = openAiClient.createThreadAndRun(userQuestion);
+            return new StartedRun(run.threadId(), run.id());
+        }
+        openAiClient.addMessageToThread(threadId, userQuestion);
+        return new StartedRun(threadId, openAiClient.runThread(threadId).id());
+    }
+
+    private CompletableFuture<AssistantResponseDto> completeResponse(StoredResponse entry, RunAnswer answer) {
+        return completeResponse(entry, answer.text(), answer.threadId()).thenApply(response -> {
+            response.setMessageId(answer.messageId());
+            return response;
+        });
+    }
+
+    /**
+     * Record the cleaned answer on {@code entry} and, in blind mode, synthesize its audio.
+     * The answer is readable through {@link #getResponse} before the audio is ready; the
+     * returned future completes once it is.
+     */
+    private CompletableFuture<AssistantResponseDto> completeResponse(StoredResponse entry, String assistantMessage, String threadId) {
+        entry.setAnswer(assistantMessage);
+        entry.setThreadId(threadId);
+        entry.setStatus(AnswerStatus.ANSWERED);
+        responseStore.put(entry);
+
+        // Optionally synthesize audio; each sentence chunk is listed locally as soon as it can be
+        // played, and other instances see the audio once all of it is ready
+        if (!entry.isBlindMode()) {
+            return CompletableFuture.completedFuture(entry.toDto());
+        }
+        return audioService.processAudio(assistantMessage, entry.getResponseId(), part -> {
+            entry.addAudioPart(part);
+            responseStore.putProgress(entry);
+        }).thenApplyAsync(audioFile -> {
+            entry.setAudioFile(audioFile);
+            entry.setStatus(AnswerStatus.AUDIO_READY);
+            responseStore.put(entry);
+            return entry.toDto();
+        }, executor);
+    }
+
+    /**
+     * Stream the answer to a question as Server-Sent Events while the run is still producing it.
+     * Emits a "meta" event with the thread and response IDs, "delta" events with cleaned text
+     * and a final "done" event carrying the full response. {@code onComplete} is called with the
+     * full answer before "done" is sent, so callers can persist it.
+     * <p>
+     * A stream holds its thread for as long as the run produces tokens, so streams run on the
+     * streaming executor and leave the assistant executor to short tasks.
+     */
+    public SseEmitter streamQuestion(AssistantRequestDto requestDto,
+                                     Map<String, String> metadata,
+                                     Consumer<AssistantResponseDto> onComplete) {
+        return streamQuestion(requestDto, CompletableFuture.completedFuture(requestDto.getThreadId()), metadata, onComplete);
+    }
+
+    /**
+     * Variant of {@link #streamQuestion(AssistantRequestDto, Map, Consumer)} for when the thread
+     * to stream on is only known once {@code threadId} completes, e.g. after compaction.
+     */
+    public SseEmitter streamQuestion(AssistantRequestDto requestDto,
+                                     CompletableFuture<String> threadId,
+                                     Map<String, String> metadata,
+                                     Consumer<AssistantResponseDto> onComplete) {
+        String userQuestion = requestDto.getQuestion();
+        if (userQuestion == null || userQuestion.isEmpty()) {
+            throw new IllegalArgumentException("No question provided");
+        }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        RequestDeadline deadline = RequestDeadline.after(Duration.ofMillis(STREAM_TIMEOUT_MS));
+        // Stop the OpenAI run when the client disconnects or the stream times out
+        emitter.onTimeout(deadline::cancel);
+        emitter.onError(error -> deadline.cancel());
+
+        threadId.thenCompose(resolvedThreadId -> {
+            requestDto.setThreadId(resolvedThreadId);
+            // The stream starts once rate limit capacity is due, without holding a thread until then
+            Supplier<CompletableFuture<Void>> stream = () -> rateLimiter.supplyWhenAdmitted(
+                rateLimiter.runTokensFor(requestDto.getQuestion()), () -> {
+                    streamAnswer(requestDto, metadata, onComplete, emitter, deadline);
+                    return null;
+                }, streamingExecutor);
+            if (resolvedThreadId == null || resolvedThreadId.isEmpty()) {
+                return stream.get();
+            }
+            return threadRuns.submit(resolvedThreadId, stream);
+        }).whenComplete((ignored, error) -> {
+            // streamAnswer reports its own failures; this covers the thread lookup, a rate limit
+            // rejection and a full executor
+            if (error != null) {
+                failStream(emitter, error);
             }
+        });
+        return emitter;
+    }
 
-            // Extract the assistant's reply
-            List<Map<String, Object>> messages = getThreadMessages(threadId);
-            String assistantMessage = extractLatestAssistantMessage(messages);
-            assistantMessage = TextUtils.cleanText(assistantMessage);
+    private void streamAnswer(AssistantRequestDto requestDto,
+                              Map<String, String> metadata,
+                              Consumer<AssistantResponseDto> onComplete,
+                              SseEmitter emitter,
+                              RequestDeadline deadline) {
+        try {
+            deadline.check();
+            String userQuestion = requestDto.getQuestion();
+            boolean blindMode = Boolean.TRUE.equals(requestDto.getBlindMode());
+            String threadId = requestDto.getThreadId();
+
+            logger.info("Streaming question. Thread ID: {}, Blind Mode: {}", threadId, blindMode);
 
-            // Generate and store response
             String responseId = audioService.generateResponseId();
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("answer", assistantMessage);
-            responseData.put("audio_file", null);
-            responses.put(responseId, responseData);
-
-            // Optionally synthesize audio
-            String audioFilePath = null;
-            if (blindMode) {
-                audioFilePath = audioService.processAudio(assistantMessage, responseId);
-                responseData.put("audio_file", audioFilePath);
-            }
+            StoredResponse entry = new StoredResponse(responseId, AnswerStatus.RUNNING, blindMode);
+            responseStore.put(entry);
+
+            StreamingTextCleaner cleaner = new StreamingTextCleaner();
+            StringBuilder answer = new StringBuilder();
+            Consumer<String> onDelta = delta -> sendDelta(emitter, answer, cleaner.append(delta));
+            AtomicReference<String> streamThreadId = new AtomicReference<>(threadId);
+            chatGuard.call(() -> {
+                if (threadId == null || threadId.isEmpty()) {
+                    // The new thread's ID is only known once the run has been created
+                    openAiClient.streamNewThreadRun(userQuestion, deadline, run -> {
+                        streamThreadId.set(run.threadId());
+                        sendMeta(emitter, metadata, run.threadId(), responseId);
+                    }, onDelta);
+                } else {
+                    openAiClient.addMessageToThread(threadId, userQuestion);
+                    sendMeta(emitter, metadata, threadId, responseId);
+                    openAiClient.streamRun(threadId, deadline, onDelta);
+                }
+                return null;
+            });
+            sendDelta(emitter, answer, cleaner.finish());
 
-            return AssistantResponseDto.builder()
-                .answer(assistantMessage)
-                .responseId(responseId)
-                .audioFile(audioFilePath != null ? "/api/audio/" + audioFilePath : null)
-                .threadId(threadId)
-                .build();
+            // The stream thread is this stream's own, so it can wait for the audio
+            AssistantResponseDto response = completeResponse(entry, answer.toString(), streamThreadId.get()).join();
+
+            if (onComplete != null) {
+                onComplete.accept(response);
+            }
+            emitter.send(SseEmitter.event().name("done").data(response));
+            emitter.complete();
 
         } catch (Exception e) {
-            logger.error("Error processing question", e);
-            throw new RuntimeException("Failed to process question: " + e.getMessage(), e);
+            failStream(emitter, e);
+        }
+    }
+
+    private void failStream(SseEmitter emitter, Throwable e) {
+        Throwable error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        logger.error("Error streaming answer", error);
+        try {
+            emitter.send(SseEmitter.event().name("error").data(clientMessage(error)));
+        } catch (IOException | IllegalStateException ignored) {
+            // Client already went away
+        }
+        emitter.complete();
+    }
+
+    private void sendMeta(SseEmitter emitter, Map<String, String> metadata, String threadId, String responseId) {
+        Map<String, String> meta = new HashMap<>(metadata);
+        meta.put("threadId", threadId);
+        meta.put("responseId", responseId);
+        try {
+            emitter.send(SseEmitter.event().name("meta").data(meta));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Client disconnected while streaming", e);
+        }
+    }
+
+    private void sendDelta(SseEmitter emitter, StringBuilder answer, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        answer.append(text);
+        try {
+            emitter.send(SseEmitter.event().name("delta").data(Map.of("text", text)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Client disconnected while streaming", e);
         }
     }
 
     /**
-     * Retrieve a previously generated response by ID.
+     * Retrieve a previously generated response by ID, including its progress status.
      */
     public AssistantResponseDto getResponse(String responseId) {
-        Map<String, Object> responseData = responses.get(responseId);
-        if (responseData == null) {
-            throw new IllegalArgumentException("Invalid response ID: " + responseId);
-        }
-        String answer = (String) responseData.get("answer");
-        String audioFile = (String) responseData.get("audio_file");
-        if (audioFile == null) {
-            return AssistantResponseDto.builder()
-                .answer(answer)
-                .responseId(responseId)
-                .build();
-        }
-        return AssistantResponseDto.builder()
-            .answer(answer)
-            .responseId(responseId)
-            .audioFile("/api/audio/" + audioFile)
-            .build();
+        return responseStore.get(responseId)
+            .map(StoredResponse::toDto)
+            .orElseThrow(() -> new IllegalArgumentException("Invalid response ID: " + responseId));
+    }
+
+    /**
+     * Name of the audio file of a response, if it has one.
+     */
+    public Optional<String> findAudioFile(String responseId) {
+        return responseStore.get(responseId).map(StoredResponse::getAudioFile);
     }
 
     /**
@@ -151,15 +462,19 @@ public class AssistantService {
         if (files == null || files.isEmpty()) {
             throw new IllegalArgumentException("No files provided");
         }
+        return filesGuard.call(() -> ingestFiles(files));
+    }
+
+    private FileUploadResponseDto ingestFiles(List<MultipartFile> files) {
         try {
-            Map<String, Object> assistant = getAssistant(openAiConfig.getAssistantId());
-            String currentVectorStoreId = extractVectorStoreId(assistant);
+            OpenAiAssistant assistant = openAiClient.getAssistant(openAiConfig.getAssistantId());
+            String currentVectorStoreId = assistant.primaryVectorStoreId();
 
             List<String> uploadedFileIds = new ArrayList<>();
             List<String> uploadedFilenames = new ArrayList<>();
             for (MultipartFile file : files) {
                 if (!file.isEmpty()) {
-                    String fileId = uploadFile(file);
+                    String fileId = openAiClient.uploadFile(file);
                     uploadedFileIds.add(fileId);
                     uploadedFilenames.add(file.getOriginalFilename());
                 }
@@ -168,19 +483,21 @@ public class AssistantService {
             // Merge with existing files
             List<String> allFileIds = new ArrayList<>();
             if (currentVectorStoreId != null && !currentVectorStoreId.isEmpty()) {
-                Map<String, Object> vectorStoreFiles = getVectorStoreFiles(currentVectorStoreId);
-                List<Map<String, Object>> data = (List<Map<String, Object>>) vectorStoreFiles.get("data");
+                List<OpenAiFile> data = openAiClient.getVectorStoreFiles(currentVectorStoreId);
                 if (data != null) {
-                    for (Map<String, Object> fileInfo : data) {
-                        allFileIds.add((String) fileInfo.get("id"));
+                    for (OpenAiFile fileInfo : data) {
+                        allFileIds.add(fileInfo.id());
                     }
                 }
             }
             allFileIds.addAll(uploadedFileIds);
 
-            Map<String, Object> newVectorStore = createVectorStore(allFileIds);
-            String newVectorStoreId = (String) newVectorStore.get("id");
-            updateAssistantVectorStore(openAiConfig.getAssistantId(), newVectorStoreId);
+            String newVectorStoreId = openAiClient.createVectorStore(allFileIds).id();
+            openAiClient.updateAssistantVectorStore(openAiConfig.getAssistantId(), newVectorStoreId);
+            // Answers cached against the previous vector store are unreachable from now on
+            knowledgeBaseVersion.update(newVectorStoreId);
+            answerCache.invalidateAll();
+            similarQuestions.reset(newVectorStoreId);
 
             return FileUploadResponseDto.builder()
                 .message(uploadedFileIds.size() + " files uploaded successfully")
@@ -192,6 +509,8 @@ public class AssistantService {
                 .totalFiles(allFileIds.size())
                 .build();
 
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error uploading files to assistant", e);
             throw new RuntimeException("Failed to upload files: " + e.getMessage(), e);
@@ -202,205 +521,31 @@ public class AssistantService {
     // Private helper methods follow:
     // ────────────────────────────────────────────────────────────────────────────
 
-    private Map<String, Object> createThread(String initialMessage) {
-        HttpHeaders headers = createOpenAiHeaders();
-        Map<String, Object> requestBody = new HashMap<>();
-        List<Map<String, Object>> messages = new ArrayList<>();
-        Map<String, Object> message = new HashMap<>();
-        message.put("role", "user");
-        message.put("content", initialMessage);
-        messages.add(message);
-        requestBody.put("messages", messages);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/threads",
-            HttpMethod.POST,
-            request,
-            Map.class
-        );
-        return response.getBody();
-    }
-
-    private void addMessageToThread(String threadId, String messageContent) {
-        HttpHeaders headers = createOpenAiHeaders();
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("role", "user");
-        requestBody.put("content", messageContent);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-        restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/threads/" + threadId + "/messages",
-            HttpMethod.POST,
-            request,
-            Map.class
-        );
-    }
-
-    private Map<String, Object> runThread(String threadId) {
-        HttpHeaders headers = createOpenAiHeaders();
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("assistant_id", openAiConfig.getAssistantId());
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/threads/" + threadId + "/runs",
-            HttpMethod.POST,
-            request,
-            Map.class
-        );
-        return response.getBody();
-    }
-
-    private Map<String, Object> getRunStatus(String threadId, String runId) {
-        HttpHeaders headers = createOpenAiHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/threads/" + threadId + "/runs/" + runId,
-            HttpMethod.GET,
-            entity,
-            Map.class
-        );
-        return response.getBody();
-    }
-
-    private List<Map<String, Object>> getThreadMessages(String threadId) {
-        HttpHeaders headers = createOpenAiHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/threads/" + threadId + "/messages",
-            HttpMethod.GET,
-            entity,
-            Map.class
-        );
-        Map<String, Object> body = response.getBody();
-        return (List<Map<String, Object>>) body.get("data");
-    }
-
-    private String extractLatestAssistantMessage(List<Map<String, Object>> messages) {
-        for (Map<String, Object> message : messages) {
-            if ("assistant".equals(message.get("role"))) {
-                List<Map<String, Object>> content = (List<Map<String, Object>>) message.get("content");
-                for (Map<String, Object> c : content) {
-                    if ("text".equals(c.get("type"))) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> textValue = (Map<String, Object>) c.get("text");
-                        return (String) textValue.get("value");
-                    }
-                }
-            }
+    private OpenAiMessage findLatestAssistantMessage(List<OpenAiMessage> messages, String runId) {
+        if (messages == null) {
+            return null;
         }
-        return "";
-    }
-
-    private Map<String, Object> getAssistant(String assistantId) {
-        HttpHeaders headers = createOpenAiHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/assistants/" + assistantId,
-            HttpMethod.GET,
-            entity,
-            Map.class
-        );
-        return response.getBody();
-    }
-
-    private String extractVectorStoreId(Map<String, Object> assistant) {
-        if (assistant.containsKey("tool_resources")) {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> toolResources = (Map<String, Object>) assistant.get("tool_resources");
-            if (toolResources != null && toolResources.containsKey("file_search")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> fileSearch = (Map<String, Object>) toolResources.get("file_search");
-                @SuppressWarnings("unchecked")
-                List<String> vectorStoreIds = (List<String>) fileSearch.get("vector_store_ids");
-                if (vectorStoreIds != null && !vectorStoreIds.isEmpty()) {
-                    return vectorStoreIds.get(0);
-                }
+        for (OpenAiMessage message : messages) {
+            boolean fromRun = message.runId() == null || message.runId().equals(runId);
+            if ("assistant".equals(message.role()) && fromRun) {
+                return message;
             }
         }
         return null;
     }
 
-    private String uploadFile(MultipartFile file) throws IOException {
-        HttpHeaders headers = createOpenAiHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("purpose", "assistants");
-        body.add("file", new HttpEntity<>(file.getBytes(), createFileHeaders(file.getOriginalFilename())));
-
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/files",
-            HttpMethod.POST,
-            requestEntity,
-            Map.class
-        );
-        return (String) response.getBody().get("id");
-    }
-
-    private Map<String, Object> getVectorStoreFiles(String vectorStoreId) {
-        HttpHeaders headers = createOpenAiHeaders();
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/vector_stores/" + vectorStoreId + "/files",
-            HttpMethod.GET,
-            entity,
-            Map.class
-        );
-        return response.getBody();
-    }
-
-    private Map<String, Object> createVectorStore(List<String> fileIds) {
-        HttpHeaders headers = createOpenAiHeaders();
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("file_ids", fileIds);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-        ResponseEntity<Map> response = restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/vector_stores",
-            HttpMethod.POST,
-            request,
-            Map.class
-        );
-        return response.getBody();
-    }
-
-    private void updateAssistantVectorStore(String assistantId, String vectorStoreId) {
-        HttpHeaders headers = createOpenAiHeaders();
-        Map<String, Object> fileSearch = new HashMap<>();
-        fileSearch.put("vector_store_ids", Collections.singletonList(vectorStoreId));
-        Map<String, Object> toolResources = new HashMap<>();
-        toolResources.put("file_search", fileSearch);
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("tool_resources", toolResources);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-        restTemplate.exchange(
-            OPENAI_API_BASE_URL + "/assistants/" + assistantId,
-            HttpMethod.POST,
-            request,
-            Map.class
-        );
-    }
-
-    /**
-     * Construct headers for any OpenAI request, using the raw API key
-     * from OpenAiConfig rather than a non-existent getToken().
-     */
-    private HttpHeaders createOpenAiHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(openAiConfig.getApiKey());
-        headers.set("OpenAI-Beta", "assistants=v1");
-        return headers;
+    private String extractText(OpenAiMessage message) {
+        if (message == null || message.content() == null) {
+            return "";
+        }
+        for (OpenAiMessage.Content c : message.content()) {
+            if ("text".equals(c.type()) && c.text() != null) {
+                return c.text().value();
+            }
+        }
+        return "";
     }
 
-    private HttpHeaders createFileHeaders(String filename) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("file", filename);
-        return headers;
+    private record StartedRun(String threadId, String runId) {
     }
 }
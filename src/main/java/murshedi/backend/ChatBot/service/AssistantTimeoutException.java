@@ -0,0 +1,17 @@
+package murshedi.backend.ChatBot.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when a question's {@link RequestDeadline} passes before the assistant answered.
+ * Resolved by Spring MVC as a 504 response.
+ */
+public class AssistantTimeoutException extends ResponseStatusException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AssistantTimeoutException(String reason) {
+        super(HttpStatus.GATEWAY_TIMEOUT, reason);
+    }
+}
@@ -0,0 +1,451 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import murshedi.backend.ChatBot.QuestionAnswer;
+import murshedi.backend.ChatBot.QuestionAnswerRepository;
+import murshedi.backend.ChatBot.store.SharedAudioStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for the speech files on local disk. Audio is named after a SHA-256
+ * of the TTS model, the voice and the whitespace-normalized text, so every answer with the same
+ * text shares one file and is synthesized once.
+ * <p>
+ * Files live under {@code assistant.audio.dir}, spread over subdirectories named after the
+ * first two characters of their key so no directory grows large. They are kept under
+ * {@code max-size} in least-recently-used order, and a background sweep also removes files
+ * unused for {@code ttl} and partial files left by crashed syntheses. An evicted file stays in
+ * the {@link SharedAudioStore} while a {@link QuestionAnswer} still references it, and is
+ * restored from there on the next request. Shared copies nothing references are dropped once
+ * they are older than {@code shared-grace}, which covers answers whose row is not saved yet and
+ * audio only listed on a shared response, so it should be at least {@code assistant.responses.ttl}.
+ * Chunk files are never referenced by a row; any shared copies of them go after the same grace.
+ */
+@Component
+public class AudioCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AudioCache.class);
+
+    private static final String PREFIX = "output_";
+    private static final String SUFFIX = ".mp3";
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final int BUFFER_SIZE = 8192;
+    // Content-addressed names: the key, optionally followed by a chunk number
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("output_[0-9a-f]{64}(-\\d+)?\\.mp3");
+    private static final Pattern CHUNK = Pattern.compile("output_[0-9a-f]{64}-\\d+\\.mp3");
+    // A write slower than this has been abandoned
+    private static final long PARTIAL_MAX_AGE_MS = Duration.ofHours(1).toMillis();
+
+    private final QuestionAnswerRepository questionAnswerRepository;
+    private final SharedAudioStore sharedAudioStore;
+    private final Path root;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final Duration sharedGrace;
+    private final Duration sweepInterval;
+    private final ScheduledExecutorService sweeper;
+    // Access-ordered: the head is the least recently used file
+    private final LinkedHashMap<String, StoredFile> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // SHA-256 of each file's bytes, computed on first request; files are replaced, never modified
+    private final Map<String, String> contentHashes = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictedForSize = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong bytesEvictedForSize = new AtomicLong();
+    private final AtomicLong bytesExpired = new AtomicLong();
+
+    public AudioCache(QuestionAnswerRepository questionAnswerRepository,
+                      SharedAudioStore sharedAudioStore,
+                      MeterRegistry meterRegistry,
+                      @Value("${assistant.audio.dir:audio}") String dir,
+                      @Value("${assistant.audio.max-size:2GB}") DataSize maxSize,
+                      @Value("${assistant.audio.ttl:30d}") Duration ttl,
+                      @Value("${assistant.audio.shared-grace:1d}") Duration sharedGrace,
+                      @Value("${assistant.audio.sweep-interval:10m}") Duration sweepInterval) {
+        this.questionAnswerRepository = questionAnswerRepository;
+        this.sharedAudioStore = sharedAudioStore;
+        this.root = Path.of(dir).toAbsolutePath().normalize();
+        this.maxBytes = maxSize.toBytes();
+        this.ttlMillis = ttl.toMillis();
+        this.sharedGrace = sharedGrace;
+        this.sweepInterval = sweepInterval;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audio-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("assistant.audio.stored_bytes", this, AudioCache::getTotalBytes).register(meterRegistry);
+        Gauge.builder("assistant.audio.stored_files", this, AudioCache::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.audio.evictions", evictedForSize, AtomicLong::get).tag("cause", "size").register(meterRegistry);
+        FunctionCounter.builder("assistant.audio.evictions", expired, AtomicLong::get).tag("cause", "expired").register(meterRegistry);
+        FunctionCounter.builder("assistant.audio.evicted_bytes", bytesEvictedForSize, AtomicLong::get).tag("cause", "size").register(meterRegistry);
+        FunctionCounter.builder("assistant.audio.evicted_bytes", bytesExpired, AtomicLong::get).tag("cause", "expired").register(meterRegistry);
+        FunctionCounter.builder("assistant.tts.cache.lookups", hits, AtomicLong::get).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("assistant.tts.cache.lookups", misses, AtomicLong::get).tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Index the stored files in the background, then sweep every {@code sweep-interval}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        sweeper.execute(this::load);
+        long intervalMs = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Key for speech of {@code text} in {@code voice} by {@code model}. Runs of whitespace do
+     * not change the speech, so they do not change the key either.
+     */
+    public static String keyFor(String text, String model, String voice) {
+        String normalized = text.strip().replaceAll("\\s+", " ");
+        MessageDigest digest = sha256();
+        digest.update((model + '\n' + voice + '\n').getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String fileName(String key) {
+        return PREFIX + key + SUFFIX;
+    }
+
+    public static String partFileName(String key, int part) {
+        return PREFIX + key + "-" + part + SUFFIX;
+    }
+
+    /**
+     * Where {@code fileName} is stored: {@code <dir>/<first two characters of its key>/<fileName>}.
+     */
+    public Path path(String fileName) {
+        String id = fileName.startsWith(PREFIX) ? fileName.substring(PREFIX.length()) : fileName;
+        String shard = id.length() > 2 ? id.substring(0, 2).toLowerCase(Locale.ROOT) : "_";
+        return root.resolve(shard).resolve(fileName);
+    }
+
+    /**
+     * {@link #path} of a file about to be written, creating its directory if needed.
+     */
+    public Path pathForWrite(String fileName) {
+        Path path = path(fileName);
+        try {
+            Files.createDirectories(path.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create audio directory " + path.getParent(), e);
+        }
+        return path;
+    }
+
+    /**
+     * Hex SHA-256 of the bytes of local file {@code fileName}, for use as a strong ETag. Unlike
+     * the key in the name, this changes if evicted speech is ever synthesized again.
+     */
+    public String contentHash(String fileName) throws IOException {
+        String cached = contentHashes.get(fileName);
+        if (cached != null) {
+            return cached;
+        }
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path(fileName), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        // Only cache hashes of indexed files, which are dropped again when the file changes
+        synchronized (files) {
+            if (files.containsKey(fileName)) {
+                contentHashes.put(fileName, hash);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Whether {@code fileName} is on local disk or in the shared store, marking it as recently
+     * used. Counted as a cache hit or miss.
+     */
+    public boolean lookup(String fileName) {
+        boolean found = isLocal(fileName) || sharedAudioStore.audioExists(fileName);
+        (found ? hits : misses).incrementAndGet();
+        return found;
+    }
+
+    /**
+     * Whether {@code fileName} is on local disk, marking it as recently used.
+     */
+    public boolean isLocal(String fileName) {
+        synchronized (files) {
+            StoredFile file = files.get(fileName);
+            if (file == null) {
+                return false;
+            }
+            file.lastUsedMillis = System.currentTimeMillis();
+        }
+        if (Files.exists(path(fileName))) {
+            return true;
+        }
+        // Removed behind our back
+        forget(fileName);
+        return false;
+    }
+
+    /**
+     * Record a file written to local disk, evicting the least recently used files over the quota.
+     */
+    public void added(String fileName, long sizeBytes) {
+        add(fileName, sizeBytes, System.currentTimeMillis());
+        enforceQuota(fileName);
+    }
+
+    /**
+     * Delete local file {@code fileName} and stop tracking it. Readers that already opened it
+     * keep reading it.
+     */
+    public void remove(String fileName) {
+        forget(fileName);
+        deleteQuietly(path(fileName));
+    }
+
+    public long getTotalBytes() {
+        synchronized (files) {
+            return totalBytes;
+        }
+    }
+
+    public int size() {
+        synchronized (files) {
+            return files.size();
+        }
+    }
+
+    private void add(String fileName, long sizeBytes, long lastUsedMillis) {
+        synchronized (files) {
+            StoredFile previous = files.put(fileName, new StoredFile(sizeBytes, lastUsedMillis));
+            contentHashes.remove(fileName);
+            totalBytes += sizeBytes - (previous != null ? previous.sizeBytes : 0);
+        }
+    }
+
+    // Never evicts keepFileName, the file just added, even if it alone is over the quota
+    private void enforceQuota(String keepFileName) {
+        Map<String, Long> victims = new LinkedHashMap<>();
+        synchronized (files) {
+            Iterator<Map.Entry<String, StoredFile>> it = files.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, StoredFile> oldest = it.next();
+                if (oldest.getKey().equals(keepFileName)) {
+                    continue;
+                }
+                it.remove();
+                contentHashes.remove(oldest.getKey());
+                totalBytes -= oldest.getValue().sizeBytes;
+                victims.put(oldest.getKey(), oldest.getValue().sizeBytes);
+            }
+        }
+        victims.forEach((fileName, sizeBytes) -> {
+            evictedForSize.incrementAndGet();
+            bytesEvictedForSize.addAndGet(sizeBytes);
+            evict(fileName);
+        });
+    }
+
+    /**
+     * Remove files unused for longer than the TTL and abandoned partial files, then trim to
+     * the quota in case files were added while the store was loading.
+     */
+    private void sweep() {
+        try {
+            long cutoff = System.currentTimeMillis() - ttlMillis;
+            Map<String, Long> victims = new LinkedHashMap<>();
+            synchronized (files) {
+                Iterator<Map.Entry<String, StoredFile>> it = files.entrySet().iterator();
+                // Least recently used first, so the expired files are all at the head
+                while (it.hasNext()) {
+                    Map.Entry<String, StoredFile> oldest = it.next();
+                    if (oldest.getValue().lastUsedMillis >= cutoff) {
+                        break;
+                    }
+                    it.remove();
+                    contentHashes.remove(oldest.getKey());
+                    totalBytes -= oldest.getValue().sizeBytes;
+                    victims.put(oldest.getKey(), oldest.getValue().sizeBytes);
+                }
+            }
+            victims.forEach((fileName, sizeBytes) -> {
+                expired.incrementAndGet();
+                bytesExpired.addAndGet(sizeBytes);
+                evict(fileName);
+            });
+            deleteAbandonedPartials();
+            enforceQuota(null);
+            if (!victims.isEmpty()) {
+                logger.info("Removed {} audio files unused for {} ms", victims.size(), ttlMillis);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Audio sweep failed", e);
+        }
+    }
+
+    private void deleteAbandonedPartials() {
+        long cutoff = System.currentTimeMillis() - PARTIAL_MAX_AGE_MS;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            paths.filter(path -> path.getFileName().toString().endsWith(PARTIAL_SUFFIX))
+                .filter(path -> lastModified(path) < cutoff)
+                .forEach(AudioCache::deleteQuietly);
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not scan {} for partial audio files", root, e);
+        }
+    }
+
+    /**
+     * Move files written to the working directory by older versions into the store, then index
+     * everything in it, least recently modified first.
+     */
+    private void load() {
+        try {
+            Files.createDirectories(root);
+            try (DirectoryStream<Path> legacy = Files.newDirectoryStream(Path.of("").toAbsolutePath(), PREFIX + "*" + SUFFIX)) {
+                for (Path file : legacy) {
+                    Path target = pathForWrite(file.getFileName().toString());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            List<Path> found = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(root, 2)) {
+                paths.filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                }).forEach(found::add);
+            }
+            found.sort(Comparator.comparingLong(AudioCache::lastModified));
+            for (Path file : found) {
+                try {
+                    add(file.getFileName().toString(), Files.size(file), lastModified(file));
+                } catch (IOException e) {
+                    // Deleted while scanning
+                }
+            }
+            logger.info("Indexed {} audio files ({} bytes) under {}", size(), getTotalBytes(), root);
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not index the audio directory {}", root, e);
+        }
+        sweep();
+    }
+
+    private void forget(String fileName) {
+        synchronized (files) {
+            StoredFile file = files.remove(fileName);
+            contentHashes.remove(fileName);
+            if (file != null) {
+                totalBytes -= file.sizeBytes;
+            }
+        }
+    }
+
+    private void evict(String fileName) {
+        // Readers that already opened the file keep reading it
+        deleteQuietly(path(fileName));
+        // Older files are named after their response and may still be referenced by ID only
+        if (!CONTENT_ADDRESSED.matcher(fileName).matches()) {
+            return;
+        }
+        try {
+            if (CHUNK.matcher(fileName).matches() || questionAnswerRepository.countByAudioFile(fileName) == 0) {
+                sharedAudioStore.deleteAudio(fileName, Instant.now().minus(sharedGrace));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not release shared copy of evicted audio {}", fileName, e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete audio file {}", path, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static final class StoredFile {
+        private final long sizeBytes;
+        // Guarded by the lock on files
+        private long lastUsedMillis;
+
+        private StoredFile(long sizeBytes, long lastUsedMillis) {
+            this.sizeBytes = sizeBytes;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+}
@@ -1,93 +1,596 @@
 package murshedi.backend.ChatBot.service;
 
+import jakarta.annotation.PreDestroy;
+import murshedi.backend.ChatBot.config.OpenAiRateLimiter;
+import murshedi.backend.ChatBot.resilience.FeatureGuard;
+import murshedi.backend.ChatBot.store.SharedAudioStore;
+import murshedi.backend.ChatBot.util.TextUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.time.Instant;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @Service
 public class AudioService {
 
     @Value("${openai.api.key}")
     private String apiKey;
-    
+
+    private static final Pattern AUDIO_FILE_NAME = Pattern.compile("output_[A-Za-z0-9-]+\\.mp3");
+    private static final String TTS_URL = "https://api.openai.com/v1/audio/speech";
+    private static final String TTS_MODEL = "tts-1";
+    private static final String TTS_VOICE = "onyx";
+    private static final String PARTIAL_SUFFIX = ".partial";
+    // Audio is only ever moved through buffers of this size, never held whole in memory
+    private static final int BUFFER_SIZE = 8192;
+    private static final long TAIL_POLL_MS = 50;
+    private static final long PART_START_TIMEOUT_MS = 60_000;
+    private static final MediaType AUDIO_MPEG = MediaType.parseMediaType("audio/mpeg");
+
     private final RestTemplate restTemplate;
-    private final Map<String, String> audioFiles = new ConcurrentHashMap<>();
-    
-    public AudioService(RestTemplate restTemplate) {
+    private final SharedAudioStore sharedAudioStore;
+    private final AudioCache audioCache;
+    private final FeatureGuard ttsGuard;
+    private final OpenAiRateLimiter rateLimiter;
+    private final Executor ttsExecutor;
+    private final int maxChunkChars;
+    private final int chunkParallelism;
+    // Relays live audio to listeners; a listener waiting for more audio holds none of its threads
+    private final ScheduledExecutorService tailScheduler;
+    // How long chunk files outlive their join, for clients still fetching the listed parts
+    private final long partGraceMs;
+    // Part files of speech being synthesized on this instance by audio key, in playback order
+    private final Map<String, AudioPlan> activePlans = new ConcurrentHashMap<>();
+    // Audio key each answer is waiting on, while its speech is being synthesized
+    private final Map<String, String> activeResponses = new ConcurrentHashMap<>();
+    // One synthesis per audio key; concurrent answers with the same text wait for it
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public AudioService(RestTemplate restTemplate, SharedAudioStore sharedAudioStore, AudioCache audioCache,
+                        FeatureGuard ttsGuard, OpenAiRateLimiter rateLimiter, Executor ttsExecutor, int maxChunkChars, int chunkParallelism,
+                        int streamThreads, Duration partGrace) {
         this.restTemplate = restTemplate;
+        this.sharedAudioStore = sharedAudioStore;
+        this.audioCache = audioCache;
+        this.ttsGuard = ttsGuard;
+        this.rateLimiter = rateLimiter;
+        this.ttsExecutor = ttsExecutor;
+        this.maxChunkChars = maxChunkChars;
+        this.chunkParallelism = Math.max(1, chunkParallelism);
+        this.partGraceMs = partGrace.toMillis();
+        AtomicInteger counter = new AtomicInteger();
+        this.tailScheduler = Executors.newScheduledThreadPool(Math.max(1, streamThreads), runnable -> {
+            Thread thread = new Thread(runnable, "audio-tail-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
-    
+
     /**
      * Convert text to audio using OpenAI's TTS API and store the file.
-     * 
+     *
      * @param text The text to convert to speech
-     * @return Response ID associated with the processed audio
+     * @return Name of the audio file, once it is stored
      */
-    public String processAudio(String text, String responseId) {
-        String audioFilePath = "output_" + responseId + ".mp3";
-        
+    public CompletableFuture<String> processAudio(String text, String responseId) {
+        return processAudio(text, responseId, part -> { });
+    }
+
+    /**
+     * Convert text to audio chunk by chunk, reusing earlier speech of the same text. Audio is
+     * stored under a key derived from the text, voice and model (see {@link AudioCache}), so an
+     * answer whose text was spoken before costs no TTS call, and answers with the same text being
+     * synthesized at the same time share one synthesis without holding a thread while they wait.
+     * <p>
+     * Otherwise the text is split into sentence-sized chunks that are synthesized in parallel on
+     * the TTS executor, at most {@code chunkParallelism} at a time for one answer, and
+     * {@code onPartReady} receives each chunk's file name in playback order as soon as it and
+     * every chunk before it are stored. The chunks are then joined into one file (MP3 frames can
+     * simply be concatenated), whose name the returned future completes with. Only that file is
+     * published to the shared store; the chunks stay on this instance, and are deleted
+     * {@code partGrace} after the join once no live stream is still reading them.
+     * <p>
+     * While this runs, {@link #openAudioStream} can relay the audio as it arrives from OpenAI.
+     */
+    public CompletableFuture<String> processAudio(String text, String responseId, Consumer<String> onPartReady) {
+        String key = AudioCache.keyFor(text, TTS_MODEL, TTS_VOICE);
+        String audioFilePath = AudioCache.fileName(key);
+        if (audioCache.lookup(audioFilePath)) {
+            onPartReady.accept(audioFilePath);
+            return CompletableFuture.completedFuture(audioFilePath);
+        }
+
+        CompletableFuture<String> started = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, started);
+        activeResponses.put(responseId, key);
+        CompletableFuture<String> result;
+        if (existing != null) {
+            result = existing.thenApply(shared -> {
+                onPartReady.accept(shared);
+                return shared;
+            });
+        } else {
+            CompletableFuture<String> synthesized;
+            try {
+                synthesized = synthesize(key, text, onPartReady);
+            } catch (RuntimeException e) {
+                synthesized = CompletableFuture.failedFuture(e);
+            }
+            synthesized.whenComplete((path, error) -> {
+                // Later answers with this text find the stored file instead of this future
+                inFlight.remove(key, started);
+                if (error != null) {
+                    started.completeExceptionally(error);
+                } else {
+                    started.complete(path);
+                }
+            });
+            result = started;
+        }
+        return result.whenComplete((path, error) -> activeResponses.remove(responseId, key));
+    }
+
+    private CompletableFuture<String> synthesize(String key, String text, Consumer<String> onPartReady) {
+        String audioFilePath = AudioCache.fileName(key);
+        List<String> chunks = TextUtils.splitSentences(text, maxChunkChars);
+        boolean single = chunks.size() <= 1;
+        AudioPlan plan;
+        if (single) {
+            // Short answers are written straight to the final file
+            chunks = List.of(text);
+            plan = new AudioPlan(List.of(audioFilePath));
+        } else {
+            List<String> partNames = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                partNames.add(AudioCache.partFileName(key, i + 1));
+            }
+            plan = new AudioPlan(List.copyOf(partNames));
+        }
+        activePlans.put(key, plan);
+
+        List<CompletableFuture<String>> parts = new ArrayList<>(chunks.size());
+        CompletableFuture<Void> published = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < chunks.size(); i++) {
+            String chunk = chunks.get(i);
+            String partPath = plan.files.get(i);
+            // Chunk i starts once chunk i - parallelism is done, keeping a fixed window per answer
+            CompletableFuture<?> slot = i < chunkParallelism
+                ? CompletableFuture.completedFuture(null)
+                : parts.get(i - chunkParallelism);
+            // Waits for rate limit capacity without holding a TTS thread
+            CompletableFuture<String> part = slot.thenCompose(ignored -> rateLimiter.supplyWhenAdmitted(
+                OpenAiRateLimiter.tokensFor(chunk), () -> {
+                    synthesizeTo(chunk, partPath, single);
+                    return partPath;
+                }, ttsExecutor));
+            parts.add(part);
+            published = published.thenCombine(part, (ignored, path) -> {
+                onPartReady.accept(path);
+                return null;
+            });
+        }
+
+        CompletableFuture<String> done = single
+            ? published.thenApply(ignored -> audioFilePath)
+            : published.thenApplyAsync(ignored -> {
+                joinFiles(plan.files, audioFilePath);
+                // The parts are in the joined file now; drop them once nobody needs them
+                tailScheduler.schedule(plan::release, partGraceMs, TimeUnit.MILLISECONDS);
+                return audioFilePath;
+            }, ttsExecutor);
+        return done.whenComplete((path, error) -> activePlans.remove(key, plan));
+    }
+
+    /**
+     * Audio of an answer as one progressive MP3 stream. While the answer is being synthesized
+     * on this instance, each chunk is relayed as OpenAI sends it, so playback can start before
+     * the first chunk is complete.
+     *
+     * @return null if the answer's speech is not being synthesized on this instance
+     */
+    public ResponseBodyEmitter openAudioStream(String responseId) {
+        String key = responseId != null ? activeResponses.get(responseId) : null;
+        AudioPlan plan = key != null ? activePlans.get(key) : null;
+        if (plan == null || !plan.addReader()) {
+            return null;
+        }
+        return startTail(key, plan);
+    }
+
+    /**
+     * A stored audio file as a stream, or null if there is no such audio.
+     */
+    public ResponseBodyEmitter openAudioFileStream(String filename) {
+        File file = resolveAudioFile(filename);
+        if (file == null) {
+            return null;
+        }
+        AudioPlan plan = new AudioPlan(List.of(filename));
+        plan.addReader();
+        return startTail(null, plan);
+    }
+
+    private ResponseBodyEmitter startTail(String key, AudioPlan plan) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        AudioTail tail = new AudioTail(key, plan, emitter);
+        emitter.onCompletion(tail::close);
+        emitter.onTimeout(tail::close);
+        emitter.onError(error -> tail.close());
+        tailScheduler.execute(tail);
+        return emitter;
+    }
+
+    /**
+     * The files one synthesis writes, in playback order, and the live streams reading them.
+     * Chunk files are deleted and dropped from the {@link AudioCache} once they have been
+     * released after the join and the last of those streams has ended.
+     */
+    private final class AudioPlan {
+
+        private final List<String> files;
+        // Guarded by this
+        private int readers;
+        private boolean released;
+        private boolean deleted;
+
+        private AudioPlan(List<String> files) {
+            this.files = files;
+        }
+
+        /**
+         * @return false if the files are already deleted
+         */
+        synchronized boolean addReader() {
+            if (deleted) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        void removeReader() {
+            synchronized (this) {
+                readers--;
+                if (!released || readers > 0 || deleted) {
+                    return;
+                }
+                deleted = true;
+            }
+            deleteFiles();
+        }
+
+        void release() {
+            synchronized (this) {
+                released = true;
+                if (readers > 0 || deleted) {
+                    return;
+                }
+                deleted = true;
+            }
+            deleteFiles();
+        }
+
+        private void deleteFiles() {
+            files.forEach(audioCache::remove);
+        }
+    }
+
+    /**
+     * Relays the files of a plan to one listener in order, including a file still being written.
+     * Each run sends what is available and reschedules itself, so a listener waiting for OpenAI
+     * holds no thread.
+     */
+    private final class AudioTail implements Runnable {
+
+        // Sends per run before yielding to other listeners
+        private static final int MAX_SENDS_PER_RUN = 16;
+
+        private final String key;
+        private final AudioPlan plan;
+        private final ResponseBodyEmitter emitter;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int index;
+        private InputStream in;
+        private long startBy = System.currentTimeMillis() + PART_START_TIMEOUT_MS;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private AudioTail(String key, AudioPlan plan, ResponseBodyEmitter emitter) {
+            this.key = key;
+            this.plan = plan;
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int sends = 0; !closed.get() && index < plan.files.size(); ) {
+                    Path part = audioCache.path(plan.files.get(index));
+                    if (in == null) {
+                        in = open(part);
+                        if (in == null) {
+                            // Not started yet; give up if synthesis ended without it
+                            if (!synthesizing() || System.currentTimeMillis() > startBy) {
+                                finish();
+                            } else {
+                                reschedule(TAIL_POLL_MS);
+                            }
+                            return;
+                        }
+                    }
+                    // The partial file is renamed only once fully written, so EOF after this is the real end
+                    boolean complete = Files.exists(part);
+                    int read = in.read(buffer);
+                    if (read > 0) {
+                        emitter.send(Arrays.copyOf(buffer, read), AUDIO_MPEG);
+                        if (++sends >= MAX_SENDS_PER_RUN) {
+                            reschedule(0);
+                            return;
+                        }
+                    } else if (complete) {
+                        closeInput();
+                        index++;
+                        startBy = System.currentTimeMillis() + PART_START_TIMEOUT_MS;
+                    } else if (!synthesizing()) {
+                        finish();
+                        return;
+                    } else {
+                        reschedule(TAIL_POLL_MS);
+                        return;
+                    }
+                }
+                finish();
+            } catch (IOException | RuntimeException e) {
+                closeInput();
+                emitter.completeWithError(e);
+            }
+        }
+
+        private boolean synthesizing() {
+            return key != null && activePlans.get(key) == plan;
+        }
+
+        private InputStream open(Path part) throws IOException {
+            try {
+                return Files.newInputStream(Files.exists(part) ? part : partialPath(part));
+            } catch (NoSuchFileException e) {
+                // Not started yet, or renamed between the check and the open
+                return Files.exists(part) ? Files.newInputStream(part) : null;
+            }
+        }
+
+        private void reschedule(long delayMs) {
+            if (!closed.get()) {
+                tailScheduler.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void finish() {
+            closeInput();
+            if (!closed.get()) {
+                emitter.complete();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                plan.removeReader();
+            }
+        }
+
+        private void closeInput() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Read-only
+                }
+                in = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tailScheduler.shutdownNow();
+    }
+
+    /**
+     * Synthesize {@code text} into {@code filePath}. The OpenAI response body is copied to a
+     * partial file through a fixed-size buffer as it arrives, renamed into place when
+     * complete, then published to the shared store if {@code share} is set.
+     */
+    private void synthesizeTo(String text, String filePath, boolean share) {
+        Path target = audioCache.pathForWrite(filePath);
+        Path partial = partialPath(target);
         try {
             // Setup request to OpenAI TTS API
-            String ttsUrl = "https://api.openai.com/v1/audio/speech";
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(apiKey);
             headers.setContentType(MediaType.APPLICATION_JSON);
-            
+
             Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "tts-1");
-            requestBody.put("voice", "onyx");
+            requestBody.put("model", TTS_MODEL);
+            requestBody.put("voice", TTS_VOICE);
             requestBody.put("input", text);
-            
+
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            
-            // Make request to OpenAI
-            ResponseEntity<byte[]> response = restTemplate.exchange(
-                ttsUrl, 
-                HttpMethod.POST, 
-                entity, 
-                byte[].class
-            );
-            
-            // Save the audio file
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                saveAudioFile(response.getBody(), audioFilePath);
-                audioFiles.put(responseId, audioFilePath);
-                return audioFilePath;
-            } else {
-                throw new RuntimeException("Failed to generate audio: " + response.getStatusCode());
-            }
+
+            // Make request to OpenAI, within the TTS bulkhead
+            ttsGuard.call(() -> restTemplate.execute(
+                TTS_URL,
+                HttpMethod.POST,
+                restTemplate.httpEntityCallback(entity),
+                response -> {
+                    if (response.getStatusCode() != HttpStatus.OK) {
+                        throw new RuntimeException("Failed to generate audio: " + response.getStatusCode());
+                    }
+                    copyToFile(response.getBody(), partial);
+                    return null;
+                }
+            ));
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            audioCache.added(filePath, Files.size(target));
+        } catch (ResponseStatusException e) {
+            deletePartial(partial);
+            throw e;
         } catch (Exception e) {
+            deletePartial(partial);
             throw new RuntimeException("Error generating audio: " + e.getMessage(), e);
         }
+        if (share) {
+            sharedAudioStore.saveAudio(filePath, target);
+        }
     }
-    
-    private void saveAudioFile(byte[] audioData, String filePath) throws IOException {
-        File file = new File(filePath);
-        try (FileOutputStream outputStream = new FileOutputStream(file)) {
-            outputStream.write(audioData);
+
+    private static void copyToFile(InputStream in, Path target) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                // Readers tailing the partial file see each chunk as soon as it arrives
+                out.flush();
+            }
         }
     }
-    
+
     /**
-     * Retrieve the path of an audio file based on response ID
+     * Concatenate the part files into {@code filePath} with channel transfers, so the bytes
+     * never pass through the heap.
+     */
+    private void joinFiles(List<String> parts, String filePath) {
+        Path target = audioCache.pathForWrite(filePath);
+        Path partial = partialPath(target);
+        try (FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (String part : parts) {
+                try (FileChannel in = FileChannel.open(audioCache.path(part), StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            deletePartial(partial);
+            throw new RuntimeException("Error joining audio chunks: " + e.getMessage(), e);
+        }
+        try {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            audioCache.added(filePath, Files.size(target));
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving audio: " + e.getMessage(), e);
+        }
+        sharedAudioStore.saveAudio(filePath, target);
+    }
+
+    private static Path partialPath(Path file) {
+        return file.resolveSibling(file.getFileName() + PARTIAL_SUFFIX);
+    }
+
+    private static void deletePartial(Path partial) {
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException ignored) {
+            // Overwritten by the next attempt
+        }
+    }
+
+    /**
+     * Retrieve the path of an audio file named after a response ID, as written before audio was
+     * content-addressed, or null if there is none.
      */
     public String getAudioFilePath(String responseId) {
-        return audioFiles.get(responseId);
+        String audioFilePath = "output_" + responseId + ".mp3";
+        return isAudioAvailable(audioFilePath) ? audioFilePath : null;
+    }
+
+    /**
+     * Whether {@code filename} can be served, from local disk or the shared store.
+     */
+    public boolean isAudioAvailable(String filename) {
+        return audioCache.isLocal(filename) || Files.exists(audioCache.path(filename))
+            || sharedAudioStore.audioExists(filename);
+    }
+
+    /**
+     * Hash of the bytes of a local audio file, as returned by {@link #resolveAudioFile}.
+     */
+    public String getContentHash(File file) throws IOException {
+        return audioCache.contentHash(file.getName());
+    }
+
+    /**
+     * The audio file name in an {@code /api/audio/...} link, or null for no link.
+     */
+    public static String fileNameOf(String audioUrl) {
+        return audioUrl != null ? audioUrl.substring(audioUrl.lastIndexOf('/') + 1) : null;
+    }
+
+    /**
+     * Resolve an audio file for playback. If it was generated on another instance it is
+     * copied from the shared store into the local audio store first.
+     *
+     * @return the local file, or null if the name is invalid or no such audio exists
+     */
+    public File resolveAudioFile(String filename) {
+        if (filename == null || !AUDIO_FILE_NAME.matcher(filename).matches()) {
+            return null;
+        }
+        File file = audioCache.path(filename).toFile();
+        if (audioCache.isLocal(filename) || file.exists()) {
+            return file;
+        }
+        Path partial = partialPath(audioCache.pathForWrite(filename));
+        if (!sharedAudioStore.copyAudio(filename, partial)) {
+            return null;
+        }
+        try {
+            Files.move(partial, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            audioCache.added(filename, file.length());
+            return file;
+        } catch (IOException e) {
+            deletePartial(partial);
+            throw new RuntimeException("Error caching shared audio: " + e.getMessage(), e);
+        }
     }
-    
+
     /**
-     * Generate a unique response ID
+     * Generate a unique response ID.
+     * IDs are handed out before any work starts, so they must not collide between concurrent requests.
      */
     public String generateResponseId() {
-        return String.valueOf(Instant.now().toEpochMilli());
+        return UUID.randomUUID().toString();
     }
 }
@@ -0,0 +1,226 @@
+package murshedi.backend.ChatBot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import murshedi.backend.ChatBot.dto.AssistantRequestDto;
+import murshedi.backend.ChatBot.dto.AssistantResponseDto;
+import murshedi.backend.ChatBot.dto.BatchAnswerDto;
+import murshedi.backend.ChatBot.resilience.AdaptiveLimiter;
+import murshedi.backend.ChatBot.resilience.FeatureUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers a list of questions through the regular {@link AssistantService} pipeline, at most
+ * {@code assistant.batch.parallelism} at a time, and streams each result as one NDJSON line
+ * as soon as it completes. Every question goes through the ask admission limit and gets its
+ * own {@code assistant.request-timeout}; a client disconnect cancels the runs still going.
+ * <p>
+ * A question shed by the admission limit is not reported as failed right away: it is retried
+ * after the limiter's Retry-After, growing with each attempt, up to {@code shed-retries}
+ * times. The wait is scheduled, so it holds neither a thread nor an admission slot.
+ */
+@Service
+public class BatchQuestionService {
+
+    public static final MediaType NDJSON = new MediaType(MediaType.APPLICATION_NDJSON, StandardCharsets.UTF_8);
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchQuestionService.class);
+    private static final long MAX_SHED_DELAY_MS = 30_000;
+
+    private final AssistantService assistantService;
+    private final AdaptiveLimiter askLimiter;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final int parallelism;
+    private final int maxSize;
+    private final Duration timeout;
+    private final int shedRetries;
+    // Only keeps time until shed questions are retried
+    private final ScheduledExecutorService scheduler;
+
+    public BatchQuestionService(AssistantService assistantService,
+                                @Qualifier("askLimiter") AdaptiveLimiter askLimiter,
+                                ObjectMapper objectMapper,
+                                @Qualifier("assistantExecutor") Executor executor,
+                                @Value("${assistant.batch.parallelism:4}") int parallelism,
+                                @Value("${assistant.batch.max-size:500}") int maxSize,
+                                @Value("${assistant.batch.timeout:30m}") Duration timeout,
+                                @Value("${assistant.batch.shed-retries:5}") int shedRetries) {
+        this.assistantService = assistantService;
+        this.askLimiter = askLimiter;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+        this.shedRetries = shedRetries;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public ResponseBodyEmitter answerAll(List<AssistantRequestDto> questions) {
+        if (questions == null || questions.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No questions provided");
+        }
+        if (questions.size() > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "At most " + maxSize + " questions per batch");
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeout.toMillis());
+        Batch batch = new Batch(questions, emitter);
+        emitter.onTimeout(batch::cancel);
+        emitter.onError(error -> batch.cancel());
+
+        logger.info("Answering a batch of {} questions", questions.size());
+        for (int i = 0; i < Math.min(parallelism, questions.size()); i++) {
+            executor.execute(batch::startNext);
+        }
+        return emitter;
+    }
+
+    private final class Batch {
+
+        private final List<AssistantRequestDto> questions;
+        private final ResponseBodyEmitter emitter;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final ConcurrentHashMap.KeySetView<RequestDeadline, Boolean> running = ConcurrentHashMap.newKeySet();
+
+        Batch(List<AssistantRequestDto> questions, ResponseBodyEmitter emitter) {
+            this.questions = questions;
+            this.emitter = emitter;
+            this.remaining = new AtomicInteger(questions.size());
+        }
+
+        void startNext() {
+            int index = next.getAndIncrement();
+            if (index >= questions.size()) {
+                return;
+            }
+            start(index, 1);
+        }
+
+        private void start(int index, int attempt) {
+            if (cancelled.get()) {
+                return;
+            }
+            AssistantRequestDto question = questions.get(index);
+            RequestDeadline deadline = assistantService.newDeadline();
+
+            CompletableFuture<AssistantResponseDto> answer;
+            try {
+                answer = askLimiter.execute(() -> assistantService.processQuestionAsync(question, deadline),
+                    () -> !deadline.isAnsweredFromCache());
+            } catch (FeatureUnavailableException e) {
+                if (attempt <= shedRetries && retryLater(index, attempt, e.getRetryAfter())) {
+                    return;
+                }
+                answer = CompletableFuture.failedFuture(e);
+            } catch (RuntimeException e) {
+                answer = CompletableFuture.failedFuture(e);
+            }
+            running.add(deadline);
+            answer.whenComplete((response, error) -> {
+                running.remove(deadline);
+                send(index, question, response, error);
+                if (remaining.decrementAndGet() == 0) {
+                    emitter.complete();
+                } else {
+                    // Off the completing thread, so a run of quick failures cannot recurse
+                    executor.execute(this::startNext);
+                }
+            });
+        }
+
+        /**
+         * Start question {@code index} again once the ask limit is likely to admit it.
+         *
+         * @return false if the retry could not be scheduled
+         */
+        private boolean retryLater(int index, int attempt, Duration retryAfter) {
+            long delayMs = Math.min(retryAfter.toMillis() * attempt, MAX_SHED_DELAY_MS);
+            logger.debug("Batch question {} was shed, retrying in {} ms", index, delayMs);
+            try {
+                // Starting a question only submits it, so it can run on the timer thread
+                scheduler.schedule(() -> start(index, attempt + 1), delayMs, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                running.forEach(RequestDeadline::cancel);
+            }
+        }
+
+        private void send(int index, AssistantRequestDto question, AssistantResponseDto response, Throwable error) {
+            if (cancelled.get()) {
+                return;
+            }
+            BatchAnswerDto.BatchAnswerDtoBuilder line = BatchAnswerDto.builder()
+                .index(index)
+                .question(question.getQuestion());
+            if (error == null) {
+                line.status(HttpStatus.OK.value()).response(response);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                line.status(statusOf(cause).value()).error(cause instanceof ResponseStatusException e ? e.getReason() : cause.getMessage());
+            }
+            try {
+                emitter.send(objectMapper.writeValueAsString(line.build()) + "\n", NDJSON);
+            } catch (JsonProcessingException e) {
+                logger.error("Could not serialize batch answer {}", index, e);
+            } catch (IOException | IllegalStateException e) {
+                // Client went away: stop starting new questions and cancel the running ones
+                cancel();
+            }
+        }
+    }
+
+    private static HttpStatus statusOf(Throwable cause) {
+        if (cause instanceof ResponseStatusException e) {
+            HttpStatus status = HttpStatus.resolve(e.getStatusCode().value());
+            return status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+}
@@ -0,0 +1,128 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Results of requests sent with an Idempotency-Key header, so a retried request attaches to the
+ * original run while it is in flight and replays its response once it has completed, instead of
+ * starting a new run and saving a duplicate answer.
+ * <p>
+ * Keys are scoped to the caller and endpoint. Failed results are dropped so the client can retry.
+ * Bounded by {@code max-size}, oldest first, and entries expire after {@code ttl}.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong attached = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+
+    public IdempotencyStore(MeterRegistry meterRegistry,
+                            @Value("${assistant.idempotency.max-size:10000}") int maxSize,
+                            @Value("${assistant.idempotency.ttl:24h}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+
+        Gauge.builder("assistant.idempotency.size", this, IdempotencyStore::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.idempotency.requests", started, AtomicLong::get).tag("result", "started").register(meterRegistry);
+        FunctionCounter.builder("assistant.idempotency.requests", attached, AtomicLong::get).tag("result", "attached").register(meterRegistry);
+        FunctionCounter.builder("assistant.idempotency.requests", replayed, AtomicLong::get).tag("result", "replayed").register(meterRegistry);
+    }
+
+    /**
+     * Run {@code action} once per {@code scope} and {@code key}. Without a key the action simply runs.
+     *
+     * @param fingerprint identifies the request body; reusing a key for a different request is rejected with 422
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String scope, String key, String fingerprint,
+                                            Supplier<CompletableFuture<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, HEADER + " is too long");
+        }
+
+        String storeKey = scope + '\u0000' + key;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Entry existing;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            evict(now);
+            existing = entries.get(storeKey);
+            if (existing == null) {
+                entries.put(storeKey, new Entry(fingerprint, result, now));
+            }
+        }
+
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+            }
+            (existing.result.isDone() ? replayed : attached).incrementAndGet();
+            return (CompletableFuture<T>) existing.result;
+        }
+
+        started.incrementAndGet();
+        CompletableFuture<T> outcome;
+        try {
+            outcome = action.get();
+        } catch (RuntimeException e) {
+            outcome = CompletableFuture.failedFuture(e);
+        }
+        outcome.whenComplete((value, error) -> {
+            if (error != null) {
+                synchronized (entries) {
+                    entries.remove(storeKey);
+                }
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entries.size() < maxSize && now - entry.createdAtMillis <= ttlMillis) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private record Entry(String fingerprint, CompletableFuture<?> result, long createdAtMillis) {
+    }
+}
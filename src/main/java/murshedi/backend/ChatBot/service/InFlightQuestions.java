@@ -0,0 +1,104 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.util.TextUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Single-flight coalescing of identical first-turn questions. While a run for a normalized
+ * question and knowledge-base version is in flight, later callers wait for its answer instead
+ * of starting their own run. Followers get the answer text only: the leader's thread belongs
+ * to the leader's conversation.
+ * <p>
+ * The shared run has its own deadline, with the leader's expiry, so it survives the leader
+ * going away while others still wait on it. Callers are counted, and once every one of them
+ * has cancelled, the shared deadline is cancelled too and the run is stopped upstream.
+ */
+@Component
+public class InFlightQuestions {
+
+    private final Map<String, SharedRun> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    public InFlightQuestions(MeterRegistry meterRegistry) {
+        Gauge.builder("assistant.questions.in_flight", inFlight, Map::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.questions.coalesced", coalesced, AtomicLong::get)
+            .description("Upstream runs saved by joining an identical in-flight question")
+            .register(meterRegistry);
+        FunctionCounter.builder("assistant.questions.abandoned", abandoned, AtomicLong::get)
+            .description("Shared runs cancelled because every caller went away")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Answer {@code question} with {@code run}, or join the identical run already in flight.
+     * {@code run} receives the deadline of the shared run; {@code deadline} is the caller's own.
+     */
+    CompletableFuture<RunAnswer> answer(String question, String knowledgeBaseVersion, RequestDeadline deadline,
+                                        Function<RequestDeadline, CompletableFuture<RunAnswer>> run) {
+        String key = knowledgeBaseVersion + '\u0000' + TextUtils.normalizeQuestion(question);
+        SharedRun created = new SharedRun(deadline.detached());
+        SharedRun joined = inFlight.compute(key, (k, existing) ->
+            existing != null && existing.join() ? existing : created);
+        deadline.onCancel(joined::leave);
+        if (joined != created) {
+            coalesced.incrementAndGet();
+            return joined.result.thenApply(answer -> RunAnswer.of(answer.text()));
+        }
+
+        CompletableFuture<RunAnswer> leader;
+        try {
+            leader = run.apply(created.deadline);
+        } catch (RuntimeException e) {
+            leader = CompletableFuture.failedFuture(e);
+        }
+        return leader.whenComplete((answer, error) -> {
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.result.completeExceptionally(error);
+            } else {
+                created.result.complete(answer);
+            }
+        });
+    }
+
+    private final class SharedRun {
+        private final RequestDeadline deadline;
+        private final CompletableFuture<RunAnswer> result = new CompletableFuture<>();
+        // Guarded by this; zero once every caller left, after which the run cannot be joined
+        private int callers = 1;
+
+        private SharedRun(RequestDeadline deadline) {
+            this.deadline = deadline;
+        }
+
+        synchronized boolean join() {
+            if (callers == 0) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        void leave() {
+            synchronized (this) {
+                if (--callers > 0) {
+                    return;
+                }
+            }
+            if (!result.isDone()) {
+                abandoned.incrementAndGet();
+            }
+            deadline.cancel();
+        }
+    }
+}
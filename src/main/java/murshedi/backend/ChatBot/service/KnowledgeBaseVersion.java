@@ -0,0 +1,90 @@
+package murshedi.backend.ChatBot.service;
+
+import murshedi.backend.ChatBot.config.OpenAiConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The vector store currently attached to the assistant, used as the knowledge-base version
+ * for cached answers. It is re-read from OpenAI every {@code refresh} so uploads made through
+ * another instance are noticed, and updated immediately by uploads made through this one.
+ * <p>
+ * One caller at a time refreshes it; the others keep using the last known version meanwhile.
+ * A failed refresh keeps the last known version and is retried after {@code retry}, so an
+ * OpenAI outage does not turn every question into another assistant lookup.
+ */
+@Component
+public class KnowledgeBaseVersion {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseVersion.class);
+    private static final String UNKNOWN = "none";
+
+    private final OpenAiAssistantClient openAiClient;
+    private final OpenAiConfig openAiConfig;
+    private final long refreshMillis;
+    private final long retryMillis;
+    private final ReentrantLock refreshing = new ReentrantLock();
+
+    private volatile String vectorStoreId;
+    private volatile long refreshAtMillis;
+
+    public KnowledgeBaseVersion(OpenAiAssistantClient openAiClient,
+                                OpenAiConfig openAiConfig,
+                                @Value("${assistant.knowledge-base.refresh:5m}") Duration refresh,
+                                @Value("${assistant.knowledge-base.retry:30s}") Duration retry) {
+        this.openAiClient = openAiClient;
+        this.openAiConfig = openAiConfig;
+        this.refreshMillis = refresh.toMillis();
+        this.retryMillis = retry.toMillis();
+    }
+
+    /**
+     * Current vector store ID, or "none" if the assistant has no file search store or it
+     * could not be loaded yet.
+     */
+    public String current() {
+        if (System.currentTimeMillis() < refreshAtMillis) {
+            return known();
+        }
+        if (vectorStoreId != null) {
+            if (!refreshing.tryLock()) {
+                return vectorStoreId;
+            }
+        } else {
+            // Nothing to fall back on yet; wait for the first load
+            refreshing.lock();
+        }
+        try {
+            if (System.currentTimeMillis() >= refreshAtMillis) {
+                refresh();
+            }
+        } finally {
+            refreshing.unlock();
+        }
+        return known();
+    }
+
+    public void update(String newVectorStoreId) {
+        this.vectorStoreId = newVectorStoreId != null ? newVectorStoreId : UNKNOWN;
+        this.refreshAtMillis = System.currentTimeMillis() + refreshMillis;
+    }
+
+    private void refresh() {
+        try {
+            update(openAiClient.getAssistant(openAiConfig.getAssistantId()).primaryVectorStoreId());
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh the assistant's vector store ID, retrying in {} ms", retryMillis, e);
+            refreshAtMillis = System.currentTimeMillis() + retryMillis;
+        }
+    }
+
+    private String known() {
+        String known = vectorStoreId;
+        return known != null ? known : UNKNOWN;
+    }
+}
@@ -0,0 +1,302 @@
+package murshedi.backend.ChatBot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import murshedi.backend.ChatBot.config.OpenAiConfig;
+import murshedi.backend.ChatBot.dto.openai.OpenAiAssistant;
+import murshedi.backend.ChatBot.dto.openai.OpenAiChatCompletion;
+import murshedi.backend.ChatBot.dto.openai.OpenAiFile;
+import murshedi.backend.ChatBot.dto.openai.OpenAiList;
+import murshedi.backend.ChatBot.dto.openai.OpenAiMessage;
+import murshedi.backend.ChatBot.dto.openai.OpenAiMessageDelta;
+import murshedi.backend.ChatBot.dto.openai.OpenAiRequests;
+import murshedi.backend.ChatBot.dto.openai.OpenAiRun;
+import murshedi.backend.ChatBot.dto.openai.OpenAiThread;
+import murshedi.backend.ChatBot.dto.openai.OpenAiVectorStore;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Typed client for the OpenAI Assistants REST endpoints.
+ * Responses are decoded straight into the records in {@code dto.openai}; fields we don't map are skipped.
+ */
+@Component
+public class OpenAiAssistantClient {
+
+    private static final String OPENAI_API_BASE_URL = "https://api.openai.com/v1";
+
+    private static final ParameterizedTypeReference<OpenAiList<OpenAiMessage>> MESSAGE_LIST =
+        new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<OpenAiList<OpenAiFile>> FILE_LIST =
+        new ParameterizedTypeReference<>() {};
+
+    private final OpenAiConfig openAiConfig;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader deltaReader;
+    private final ObjectReader runReader;
+
+    // Built once; RestTemplate copies them into each request
+    private final HttpHeaders jsonHeaders;
+    private final HttpHeaders multipartHeaders;
+    private final HttpEntity<Void> getEntity;
+
+    public OpenAiAssistantClient(OpenAiConfig openAiConfig, RestTemplate restTemplate, ObjectMapper objectMapper) {
+        this.openAiConfig = openAiConfig;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.deltaReader = objectMapper.readerFor(OpenAiMessageDelta.class);
+        this.runReader = objectMapper.readerFor(OpenAiRun.class);
+        this.jsonHeaders = HttpHeaders.readOnlyHttpHeaders(createOpenAiHeaders(MediaType.APPLICATION_JSON));
+        this.multipartHeaders = HttpHeaders.readOnlyHttpHeaders(createOpenAiHeaders(MediaType.MULTIPART_FORM_DATA));
+        this.getEntity = new HttpEntity<>(jsonHeaders);
+    }
+
+    public OpenAiThread createThread(String initialMessage) {
+        return createThread(List.of(OpenAiRequests.CreateMessage.user(initialMessage)));
+    }
+
+    /**
+     * Create a thread holding {@code messages}, e.g. earlier turns replayed as user and
+     * assistant messages.
+     */
+    public OpenAiThread createThread(List<OpenAiRequests.CreateMessage> messages) {
+        return post("/threads", new OpenAiRequests.CreateThread(messages), OpenAiThread.class);
+    }
+
+    /**
+     * Single-shot chat completion, used outside the assistant for housekeeping such as
+     * summarizing a conversation. Returns the first choice's text.
+     */
+    public String complete(String model, List<OpenAiRequests.CreateMessage> messages, int maxTokens) {
+        OpenAiChatCompletion completion = post("/chat/completions",
+            new OpenAiRequests.CreateChatCompletion(model, messages, maxTokens), OpenAiChatCompletion.class);
+        if (completion == null || completion.choices() == null || completion.choices().isEmpty()) {
+            throw new IllegalStateException("Empty chat completion");
+        }
+        return completion.choices().get(0).message().content();
+    }
+
+    public void addMessageToThread(String threadId, String messageContent) {
+        post("/threads/" + threadId + "/messages", OpenAiRequests.CreateMessage.user(messageContent), Void.class);
+    }
+
+    public OpenAiRun runThread(String threadId) {
+        OpenAiRequests.CreateRun requestBody = new OpenAiRequests.CreateRun(openAiConfig.getAssistantId(), null);
+        return post("/threads/" + threadId + "/runs", requestBody, OpenAiRun.class);
+    }
+
+    /**
+     * Create a thread holding {@code initialMessage} and start a run on it in one request,
+     * saving the separate createThread round-trip for new conversations.
+     */
+    public OpenAiRun createThreadAndRun(String initialMessage) {
+        return post("/threads/runs", newThreadRun(initialMessage, null), OpenAiRun.class);
+    }
+
+    public void cancelRun(String threadId, String runId) {
+        post("/threads/" + threadId + "/runs/" + runId + "/cancel", null, Void.class);
+    }
+
+    /**
+     * Start a run with {@code stream: true} and feed each text delta to {@code onDelta}
+     * as the OpenAI event stream arrives. The run is cancelled if {@code deadline} passes or is
+     * cancelled while the stream is open.
+     */
+    public void streamRun(String threadId, RequestDeadline deadline, Consumer<String> onDelta) {
+        OpenAiRequests.CreateRun requestBody = new OpenAiRequests.CreateRun(openAiConfig.getAssistantId(), true);
+        stream("/threads/" + threadId + "/runs", requestBody, deadline, run -> { }, onDelta);
+    }
+
+    /**
+     * Streaming variant of {@link #createThreadAndRun}. {@code onRunCreated} receives the run,
+     * which carries the new thread's ID, before any delta.
+     */
+    public void streamNewThreadRun(String initialMessage, RequestDeadline deadline,
+                                   Consumer<OpenAiRun> onRunCreated, Consumer<String> onDelta) {
+        stream("/threads/runs", newThreadRun(initialMessage, true), deadline, onRunCreated, onDelta);
+    }
+
+    private OpenAiRequests.CreateThreadAndRun newThreadRun(String initialMessage, Boolean stream) {
+        OpenAiRequests.CreateThread thread =
+            new OpenAiRequests.CreateThread(List.of(OpenAiRequests.CreateMessage.user(initialMessage)));
+        return new OpenAiRequests.CreateThreadAndRun(openAiConfig.getAssistantId(), thread, stream);
+    }
+
+    private void stream(String path, Object requestBody, RequestDeadline deadline,
+                        Consumer<OpenAiRun> onRunCreated, Consumer<String> onDelta) {
+        restTemplate.execute(
+            OPENAI_API_BASE_URL + path,
+            HttpMethod.POST,
+            request -> {
+                request.getHeaders().putAll(jsonHeaders);
+                request.getHeaders().setAccept(Collections.singletonList(MediaType.TEXT_EVENT_STREAM));
+                request.getBody().write(objectMapper.writeValueAsBytes(requestBody));
+            },
+            response -> {
+                readRunEvents(response.getBody(), deadline, onRunCreated, onDelta);
+                return null;
+            }
+        );
+    }
+
+    private void readRunEvents(InputStream body, RequestDeadline deadline,
+                               Consumer<OpenAiRun> onRunCreated, Consumer<String> onDelta) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        OpenAiRun run = null;
+        String event = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (deadline.isDone()) {
+                if (run != null) {
+                    cancelRun(run.threadId(), run.id());
+                }
+                deadline.check();
+            }
+            if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+                continue;
+            }
+            if (!line.startsWith("data:") || event == null) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            switch (event) {
+                case "thread.message.delta" -> {
+                    OpenAiMessageDelta messageDelta = deltaReader.readValue(data);
+                    if (messageDelta.delta() == null || messageDelta.delta().content() == null) {
+                        continue;
+                    }
+                    for (OpenAiMessage.Content part : messageDelta.delta().content()) {
+                        if ("text".equals(part.type()) && part.text() != null && part.text().value() != null) {
+                            onDelta.accept(part.text().value());
+                        }
+                    }
+                }
+                case "thread.run.created" -> {
+                    run = runReader.readValue(data);
+                    onRunCreated.accept(run);
+                }
+                case "thread.run.requires_action" -> {
+                    if (run != null) {
+                        cancelRun(run.threadId(), run.id());
+                    }
+                    throw new RuntimeException("Assistant run requires an action that is not supported");
+                }
+                case "thread.run.failed", "thread.run.cancelled", "thread.run.expired", "thread.run.incomplete", "error" ->
+                    throw new RuntimeException("Assistant run failed: " + data);
+                case "done" -> {
+                    return;
+                }
+                default -> {
+                    // Run and step lifecycle events are not needed for the answer text
+                }
+            }
+        }
+    }
+
+    public OpenAiRun getRunStatus(String threadId, String runId) {
+        return get("/threads/" + threadId + "/runs/" + runId, OpenAiRun.class);
+    }
+
+    /**
+     * Fetch the newest messages produced by {@code runId} (newest first), rather than the whole
+     * thread, so the cost per question does not grow with the conversation length. With
+     * {@code afterMessageId}, the newest message seen on the thread before, only messages
+     * created after it are listed.
+     */
+    public List<OpenAiMessage> getRunMessages(String threadId, String runId, String afterMessageId, int limit) {
+        if (afterMessageId == null) {
+            return get("/threads/" + threadId + "/messages?order=desc&limit=" + limit + "&run_id=" + runId, MESSAGE_LIST).data();
+        }
+        // "after" pages towards newer messages only in ascending order
+        List<OpenAiMessage> page = get("/threads/" + threadId + "/messages?order=asc&limit=" + limit
+            + "&after=" + afterMessageId + "&run_id=" + runId, MESSAGE_LIST).data();
+        if (page == null) {
+            return List.of();
+        }
+        List<OpenAiMessage> messages = new ArrayList<>(page);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    public OpenAiAssistant getAssistant(String assistantId) {
+        return get("/assistants/" + assistantId, OpenAiAssistant.class);
+    }
+
+    public String uploadFile(MultipartFile file) throws IOException {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("purpose", "assistants");
+        body.add("file", new HttpEntity<>(file.getBytes(), createFileHeaders(file.getOriginalFilename())));
+
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, multipartHeaders);
+        ResponseEntity<OpenAiFile> response = restTemplate.exchange(
+            OPENAI_API_BASE_URL + "/files",
+            HttpMethod.POST,
+            requestEntity,
+            OpenAiFile.class
+        );
+        return response.getBody().id();
+    }
+
+    public List<OpenAiFile> getVectorStoreFiles(String vectorStoreId) {
+        return get("/vector_stores/" + vectorStoreId + "/files", FILE_LIST).data();
+    }
+
+    public OpenAiVectorStore createVectorStore(List<String> fileIds) {
+        return post("/vector_stores", new OpenAiRequests.CreateVectorStore(fileIds), OpenAiVectorStore.class);
+    }
+
+    public void updateAssistantVectorStore(String assistantId, String vectorStoreId) {
+        OpenAiAssistant.ToolResources toolResources = new OpenAiAssistant.ToolResources(
+            new OpenAiAssistant.FileSearch(List.of(vectorStoreId)));
+        post("/assistants/" + assistantId, new OpenAiRequests.UpdateAssistant(toolResources), Void.class);
+    }
+
+    private <T> T get(String path, Class<T> responseType) {
+        return restTemplate.exchange(OPENAI_API_BASE_URL + path, HttpMethod.GET, getEntity, responseType).getBody();
+    }
+
+    private <T> T get(String path, ParameterizedTypeReference<T> responseType) {
+        return restTemplate.exchange(OPENAI_API_BASE_URL + path, HttpMethod.GET, getEntity, responseType).getBody();
+    }
+
+    private <T> T post(String path, Object requestBody, Class<T> responseType) {
+        HttpEntity<Object> request = new HttpEntity<>(requestBody, jsonHeaders);
+        return restTemplate.exchange(OPENAI_API_BASE_URL + path, HttpMethod.POST, request, responseType).getBody();
+    }
+
+    /**
+     * Construct headers for any OpenAI request, using the raw API key
+     * from OpenAiConfig rather than a non-existent getToken().
+     */
+    private HttpHeaders createOpenAiHeaders(MediaType contentType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.setBearerAuth(openAiConfig.getApiKey());
+        headers.set("OpenAI-Beta", "assistants=v1");
+        return headers;
+    }
+
+    private HttpHeaders createFileHeaders(String filename) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("file", filename);
+        return headers;
+    }
+}
@@ -0,0 +1,99 @@
+package murshedi.backend.ChatBot.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Time budget of one question, passed through the whole ask pipeline. Also carries a
+ * cancellation flag, set when the HTTP client goes away, so in-flight OpenAI runs can be
+ * cancelled instead of being paid for and waited on, and notes whether the answer came from a
+ * cache so admission control only learns from latency of requests that reached OpenAI.
+ */
+public class RequestDeadline {
+
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    private volatile boolean answeredFromCache;
+    // Guarded by this
+    private List<Runnable> cancelListeners = new ArrayList<>();
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static RequestDeadline after(Duration timeout) {
+        return new RequestDeadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Same expiry, but not cancelled along with this one. Used for work shared with other callers.
+     */
+    public RequestDeadline detached() {
+        return new RequestDeadline(deadlineNanos);
+    }
+
+    public void cancel() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            listeners = cancelListeners;
+            cancelListeners = List.of();
+        }
+        listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Run {@code listener} once this deadline is cancelled, or right away if it already is.
+     * Expiry does not trigger it.
+     */
+    public void onCancel(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    public void markAnsweredFromCache() {
+        answeredFromCache = true;
+    }
+
+    public boolean isAnsweredFromCache() {
+        return answeredFromCache;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    public boolean isDone() {
+        return cancelled || isExpired();
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Throw if the request was cancelled or its time is up.
+     */
+    public void check() {
+        if (cancelled) {
+            throw new CancellationException("Request was cancelled by the client");
+        }
+        if (isExpired()) {
+            throw new AssistantTimeoutException("The assistant did not answer in time");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.QuestionAnswer;
+import murshedi.backend.ChatBot.QuestionAnswerRepository;
+import murshedi.backend.ChatBot.dto.AnswerStatus;
+import murshedi.backend.ChatBot.store.SharedResponseStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-evicting store for answers handed out by {@link AssistantService}.
+ * Entries are kept in insertion order, so the oldest entry is evicted first when the store is
+ * full and expired entries are swept from the head on every write.
+ * <p>
+ * Status changes go through to the {@link SharedResponseStore} so other instances can serve
+ * them; this map acts as the local near-cache. Progress only this instance can serve, such as
+ * audio parts, stays local. Lookups that miss locally try the shared store, then the saved
+ * {@link QuestionAnswer} row. Entries still in progress on another instance are not near-cached,
+ * so their status is re-read until they settle. Shared rows expire after the same TTL as local
+ * entries, swept every {@code sweep-interval}.
+ */
+@Component
+public class ResponseStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseStore.class);
+
+    private final QuestionAnswerRepository questionAnswerRepository;
+    private final SharedResponseStore sharedResponseStore;
+    private final AudioService audioService;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Duration sweepInterval;
+    private final ScheduledExecutorService sweeper;
+    private final LinkedHashMap<String, StoredResponse> entries = new LinkedHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedHits = new AtomicLong();
+    private final AtomicLong rehydrated = new AtomicLong();
+    private final AtomicLong evictedForSize = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong sharedExpired = new AtomicLong();
+
+    public ResponseStore(QuestionAnswerRepository questionAnswerRepository,
+                         SharedResponseStore sharedResponseStore,
+                         AudioService audioService,
+                         MeterRegistry meterRegistry,
+                         @Value("${assistant.responses.max-size:5000}") int maxSize,
+                         @Value("${assistant.responses.ttl:1h}") Duration ttl,
+                         @Value("${assistant.responses.sweep-interval:10m}") Duration sweepInterval) {
+        this.questionAnswerRepository = questionAnswerRepository;
+        this.sharedResponseStore = sharedResponseStore;
+        this.audioService = audioService;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.sweepInterval = sweepInterval;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "response-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("assistant.responses.size", this, ResponseStore::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.lookups", hits, AtomicLong::get).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.lookups", misses, AtomicLong::get).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.lookups", sharedHits, AtomicLong::get).tag("result", "shared").register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.lookups", rehydrated, AtomicLong::get).tag("result", "rehydrated").register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.evictions", evictedForSize, AtomicLong::get).tag("cause", "size").register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.evictions", expired, AtomicLong::get).tag("cause", "expired").register(meterRegistry);
+        FunctionCounter.builder("assistant.responses.shared_evictions", sharedExpired, AtomicLong::get).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long intervalMs = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweepShared, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Insert or refresh an entry and publish it to the shared store. Use for status changes.
+     * Refreshing moves it to the young end and restarts its TTL.
+     */
+    public void put(StoredResponse response) {
+        putLocal(response);
+        try {
+            sharedResponseStore.save(response);
+        } catch (RuntimeException e) {
+            logger.warn("Could not publish response {} to the shared store", response.getResponseId(), e);
+        }
+    }
+
+    /**
+     * Refresh an entry on this instance only, for progress other instances cannot serve anyway.
+     */
+    public void putProgress(StoredResponse response) {
+        putLocal(response);
+    }
+
+    private void putLocal(StoredResponse response) {
+        long now = System.currentTimeMillis();
+        response.setStoredAtMillis(now);
+        synchronized (entries) {
+            entries.remove(response.getResponseId());
+            entries.put(response.getResponseId(), response);
+            evict(now);
+        }
+    }
+
+    /**
+     * Look up a response in memory, falling back to the shared store and then the database on a miss.
+     */
+    public Optional<StoredResponse> get(String responseId) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            StoredResponse response = entries.get(responseId);
+            if (response != null && now - response.getStoredAtMillis() <= ttlMillis) {
+                hits.incrementAndGet();
+                return Optional.of(response);
+            }
+            if (response != null) {
+                entries.remove(responseId);
+                expired.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+
+        Optional<StoredResponse> shared = sharedResponseStore.find(responseId);
+        if (shared.isPresent()) {
+            sharedHits.incrementAndGet();
+            if (shared.get().isSettled()) {
+                putLocal(shared.get());
+            }
+            return shared;
+        }
+        return rehydrate(responseId);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Optional<StoredResponse> rehydrate(String responseId) {
+        List<QuestionAnswer> saved = questionAnswerRepository.findByResponseId(responseId);
+        if (saved.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Content-addressed audio is recorded on the row; older answers named it after the response
+        String savedAudio = saved.get(0).getAudioFile();
+        String audioFile = savedAudio == null ? audioService.getAudioFilePath(responseId)
+            : audioService.isAudioAvailable(savedAudio) ? savedAudio : null;
+        StoredResponse response = new StoredResponse(
+            responseId,
+            audioFile != null ? AnswerStatus.AUDIO_READY : AnswerStatus.ANSWERED,
+            audioFile != null);
+        response.setAnswer(saved.get(0).getAnswer());
+        response.setAudioFile(audioFile);
+
+        rehydrated.incrementAndGet();
+        logger.debug("Rehydrated response {} from the database", responseId);
+        putLocal(response);
+        return Optional.of(response);
+    }
+
+    private void sweepShared() {
+        try {
+            int removed = sharedResponseStore.deleteSavedBefore(Instant.now().minusMillis(ttlMillis));
+            sharedExpired.addAndGet(removed);
+            if (removed > 0) {
+                logger.info("Removed {} shared responses older than {} ms", removed, ttlMillis);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Shared response sweep failed", e);
+        }
+    }
+
+    // Caller holds the lock on entries
+    private void evict(long now) {
+        Iterator<Map.Entry<String, StoredResponse>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            StoredResponse oldest = it.next().getValue();
+            if (now - oldest.getStoredAtMillis() > ttlMillis) {
+                it.remove();
+                expired.incrementAndGet();
+            } else if (entries.size() > maxSize) {
+                it.remove();
+                evictedForSize.incrementAndGet();
+            } else {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package murshedi.backend.ChatBot.service;
+
+/**
+ * Cleaned answer text of a finished assistant run, with the thread and message it came from.
+ * Both IDs are null when the answer did not come from a run of the caller's own thread.
+ */
+record RunAnswer(String threadId, String messageId, String text) {
+
+    static RunAnswer of(String text) {
+        return new RunAnswer(null, null, text);
+    }
+}
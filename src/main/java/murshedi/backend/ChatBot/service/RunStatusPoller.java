@@ -0,0 +1,207 @@
+package murshedi.backend.ChatBot.service;
+
+import jakarta.annotation.PreDestroy;
+import murshedi.backend.ChatBot.config.OpenAiRateLimitException;
+import murshedi.backend.ChatBot.dto.openai.OpenAiRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks every in-flight assistant run and polls its status, so no request thread has to sleep
+ * while OpenAI is working. A small scheduler only keeps time; the status requests themselves
+ * run on a bounded pool, so slow responses do not hold up the schedule of other runs. Polling
+ * starts fast and backs off towards {@code maxDelayMs} the longer a run takes.
+ * <p>
+ * Every terminal status ends tracking. Transient poll failures (I/O errors, 5xx, 429) are
+ * retried with backoff until the deadline. A run that needs an action we cannot take, outlives
+ * its {@link RequestDeadline}, whose client went away or that can no longer be polled is
+ * cancelled on OpenAI's side before the question fails, so it does not keep running and billing.
+ */
+@Component
+public class RunStatusPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunStatusPoller.class);
+
+    private final OpenAiAssistantClient openAiClient;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor pollExecutor;
+    private final Map<String, TrackedRun> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${assistant.poller.initial-delay-ms:250}")
+    private long initialDelayMs;
+
+    @Value("${assistant.poller.max-delay-ms:2000}")
+    private long maxDelayMs;
+
+    @Value("${assistant.poller.backoff-multiplier:1.5}")
+    private double backoffMultiplier;
+
+    public RunStatusPoller(OpenAiAssistantClient openAiClient,
+                           @Value("${assistant.poller.threads:2}") int threads,
+                           @Value("${assistant.poller.request-threads:8}") int requestThreads,
+                           @Value("${assistant.poller.queue-capacity:1000}") int queueCapacity) {
+        this.openAiClient = openAiClient;
+        AtomicInteger counter = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "run-poller-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger requestCounter = new AtomicInteger();
+        this.pollExecutor = new ThreadPoolExecutor(requestThreads, requestThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "run-poll-" + requestCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Start tracking a run. The returned future completes with the final run object once
+     * the run is "completed", or exceptionally if it ends in any other way.
+     */
+    public CompletableFuture<OpenAiRun> awaitCompletion(String threadId, String runId, RequestDeadline deadline) {
+        TrackedRun run = new TrackedRun(threadId, runId, deadline);
+        inFlight.put(runId, run);
+        run.future.whenComplete((status, error) -> inFlight.remove(runId));
+        schedule(run, initialDelayMs);
+        return run.future;
+    }
+
+    /**
+     * Number of runs currently being tracked.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private void schedule(TrackedRun run, long delayMs) {
+        run.nextDelayMs = delayMs;
+        scheduler.schedule(() -> dispatch(run), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void dispatch(TrackedRun run) {
+        try {
+            pollExecutor.execute(() -> poll(run));
+        } catch (RejectedExecutionException e) {
+            // Every poll thread is busy and the queue is full; try again later
+            backOff(run, 0);
+        }
+    }
+
+    private void poll(TrackedRun run) {
+        if (run.future.isDone()) {
+            return;
+        }
+        if (run.deadline.isDone()) {
+            expire(run);
+            return;
+        }
+
+        OpenAiRun runStatus;
+        try {
+            runStatus = openAiClient.getRunStatus(run.threadId, run.runId);
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                logger.warn("Polling run {} failed, retrying: {}", run.runId, e.getMessage());
+                backOff(run, e instanceof OpenAiRateLimitException limited ? limited.getRetryAfter().toMillis() : 0);
+            } else {
+                fail(run, e);
+            }
+            return;
+        }
+
+        String status = runStatus.status();
+        logger.debug("Run {} status: {}", run.runId, status);
+        switch (status) {
+            case "completed" -> run.future.complete(runStatus);
+            case "failed", "expired", "cancelled", "incomplete" -> run.future.completeExceptionally(
+                new RuntimeException("Assistant run " + status + ": " + runStatus.lastError()));
+            // The assistant has no tools we can execute, so the run can never finish
+            case "requires_action" -> fail(run, new RuntimeException("Assistant run requires an action that is not supported"));
+            default -> backOff(run, 0);
+        }
+    }
+
+    /**
+     * Poll again after the next backoff step, but no later than the deadline and no sooner
+     * than {@code minDelayMs}.
+     */
+    private void backOff(TrackedRun run, long minDelayMs) {
+        if (run.deadline.isDone()) {
+            expire(run);
+            return;
+        }
+        long nextDelayMs = Math.max(minDelayMs, Math.min(maxDelayMs, (long) (run.nextDelayMs * backoffMultiplier)));
+        schedule(run, Math.max(1, Math.min(nextDelayMs, run.deadline.remaining().toMillis())));
+    }
+
+    private void expire(TrackedRun run) {
+        cancelUpstream(run);
+        try {
+            run.deadline.check();
+        } catch (RuntimeException e) {
+            run.future.completeExceptionally(e);
+        }
+    }
+
+    private void fail(TrackedRun run, Throwable error) {
+        cancelUpstream(run);
+        run.future.completeExceptionally(error);
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof ResourceAccessException
+            || e instanceof HttpServerErrorException
+            || e instanceof HttpClientErrorException.TooManyRequests
+            || e instanceof OpenAiRateLimitException;
+    }
+
+    private void cancelUpstream(TrackedRun run) {
+        try {
+            openAiClient.cancelRun(run.threadId, run.runId);
+            logger.info("Cancelled run {} on thread {}", run.runId, run.threadId);
+        } catch (Exception e) {
+            // The run may have finished in the meantime
+            logger.warn("Could not cancel run {}: {}", run.runId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pollExecutor.shutdownNow();
+        inFlight.values().forEach(run ->
+            run.future.completeExceptionally(new IllegalStateException("Run poller shut down")));
+    }
+
+    private static final class TrackedRun {
+        private final String threadId;
+        private final String runId;
+        private final RequestDeadline deadline;
+        private final CompletableFuture<OpenAiRun> future = new CompletableFuture<>();
+        private volatile long nextDelayMs;
+
+        private TrackedRun(String threadId, String runId, RequestDeadline deadline) {
+            this.threadId = threadId;
+            this.runId = runId;
+            this.deadline = deadline;
+        }
+    }
+}
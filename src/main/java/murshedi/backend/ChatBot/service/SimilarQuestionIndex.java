@@ -0,0 +1,156 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.QuestionAnswer;
+import murshedi.backend.ChatBot.QuestionAnswerRepository;
+import murshedi.backend.ChatBot.util.MinHashLshIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds earlier first-turn questions that are near-duplicates of a new one, so paraphrases of
+ * a question already answered can reuse its saved answer. Only questions answered against the
+ * current knowledge-base version are indexed.
+ * <p>
+ * The index is loaded from {@link QuestionAnswer} rows in the background at startup and grows
+ * as answers are saved, keeping the newest {@code max-entries} questions. When another
+ * instance changes the vector store, the first lookup with the new version triggers a reload.
+ */
+@Component
+public class SimilarQuestionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarQuestionIndex.class);
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    private final QuestionAnswerRepository questionAnswerRepository;
+    private final KnowledgeBaseVersion knowledgeBaseVersion;
+    private final Executor executor;
+    private final boolean enabled;
+    private final double threshold;
+    private final MinHashLshIndex index;
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile String indexedVersion;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SimilarQuestionIndex(QuestionAnswerRepository questionAnswerRepository,
+                                KnowledgeBaseVersion knowledgeBaseVersion,
+                                @Qualifier("assistantExecutor") Executor executor,
+                                MeterRegistry meterRegistry,
+                                @Value("${assistant.similar-questions.enabled:true}") boolean enabled,
+                                @Value("${assistant.similar-questions.threshold:0.6}") double threshold,
+                                @Value("${assistant.similar-questions.bands:20}") int bands,
+                                @Value("${assistant.similar-questions.rows:3}") int rows,
+                                @Value("${assistant.similar-questions.shingle-size:3}") int shingleSize,
+                                @Value("${assistant.similar-questions.max-candidates:256}") int maxCandidates,
+                                @Value("${assistant.similar-questions.max-entries:100000}") int maxEntries) {
+        this.questionAnswerRepository = questionAnswerRepository;
+        this.knowledgeBaseVersion = knowledgeBaseVersion;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.index = new MinHashLshIndex(bands, rows, shingleSize, maxCandidates, maxEntries);
+
+        Gauge.builder("assistant.similar_questions.size", index, MinHashLshIndex::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.similar_questions.lookups", hits, AtomicLong::get).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("assistant.similar_questions.lookups", misses, AtomicLong::get).tag("result", "miss").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            executor.execute(() -> reload(knowledgeBaseVersion.current()));
+        }
+    }
+
+    /**
+     * The saved answer of the most similar earlier question, if one reaches the threshold.
+     */
+    public Optional<String> findAnswer(String question, String version) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        if (!Objects.equals(version, indexedVersion)) {
+            executor.execute(() -> reload(version));
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        Optional<String> answer = index.findBest(question, threshold)
+            .flatMap(match -> {
+                logger.debug("Similar question found (similarity {}): {}", match.similarity(), match.text());
+                return questionAnswerRepository.findById(match.id());
+            })
+            .map(QuestionAnswer::getAnswer)
+            .filter(text -> !text.isEmpty());
+        (answer.isPresent() ? hits : misses).incrementAndGet();
+        return answer;
+    }
+
+    /**
+     * Index a saved answer if it was a first-turn question for the indexed knowledge base.
+     */
+    public void add(QuestionAnswer questionAnswer) {
+        if (enabled
+                && Boolean.TRUE.equals(questionAnswer.getFirstTurn())
+                && Objects.equals(questionAnswer.getKnowledgeBaseVersion(), indexedVersion)) {
+            index.add(questionAnswer.getId(), questionAnswer.getQuestion());
+        }
+    }
+
+    /**
+     * Drop everything indexed so far; nothing has been answered against {@code newVersion} yet.
+     */
+    public void reset(String newVersion) {
+        index.clear();
+        indexedVersion = newVersion;
+    }
+
+    private void reload(String version) {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (Objects.equals(version, indexedVersion)) {
+                return;
+            }
+            reset(version);
+            long afterId = 0;
+            // Stops early if an upload resets the index while it is loading
+            while (Objects.equals(version, indexedVersion)) {
+                List<QuestionAnswerRepository.IndexedQuestion> page = questionAnswerRepository
+                    .findFirstTurnQuestions(version, afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (QuestionAnswerRepository.IndexedQuestion question : page) {
+                    index.add(question.getId(), question.getQuestion());
+                    afterId = question.getId();
+                }
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+            }
+            logger.info("Indexed {} earlier questions for knowledge base {}", index.size(), version);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load the similar-question index", e);
+            indexedVersion = null;
+        } finally {
+            loading.set(false);
+        }
+    }
+}
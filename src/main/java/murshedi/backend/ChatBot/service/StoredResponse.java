@@ -0,0 +1,64 @@
+package murshedi.backend.ChatBot.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import murshedi.backend.ChatBot.dto.AnswerStatus;
+import murshedi.backend.ChatBot.dto.AssistantResponseDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of one answer as tracked by {@link ResponseStore}. Updated by the background
+ * pipeline while the answer is produced, so fields are volatile.
+ */
+@Getter
+@Setter
+public class StoredResponse {
+
+    private final String responseId;
+    private volatile String answer;
+    private volatile String threadId;
+    private volatile String audioFile;
+    // Speech for the answer's sentence chunks, in playback order, as they become ready
+    private volatile List<String> audioParts = List.of();
+    private volatile AnswerStatus status;
+    private volatile boolean blindMode;
+    private volatile String error;
+    private volatile long storedAtMillis;
+
+    public StoredResponse(String responseId, AnswerStatus status, boolean blindMode) {
+        this.responseId = responseId;
+        this.status = status;
+        this.blindMode = blindMode;
+    }
+
+    public synchronized void addAudioPart(String part) {
+        List<String> parts = new ArrayList<>(audioParts);
+        parts.add(part);
+        audioParts = List.copyOf(parts);
+    }
+
+    /**
+     * Whether the response will not change any more (answered without pending audio, or failed).
+     */
+    public boolean isSettled() {
+        return status == AnswerStatus.FAILED
+            || status == AnswerStatus.TIMED_OUT
+            || status == AnswerStatus.AUDIO_READY
+            || (status == AnswerStatus.ANSWERED && !blindMode);
+    }
+
+    public AssistantResponseDto toDto() {
+        return AssistantResponseDto.builder()
+            .answer(answer)
+            .responseId(responseId)
+            .audioFile(audioFile != null ? "/api/audio/" + audioFile : null)
+            .audioParts(audioParts.stream().map(part -> "/api/audio/" + part).toList())
+            .threadId(threadId)
+            .status(status)
+            .blindMode(blindMode)
+            .error(error)
+            .build();
+    }
+}
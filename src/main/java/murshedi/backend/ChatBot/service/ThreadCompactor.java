@@ -0,0 +1,256 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import murshedi.backend.ChatBot.Conversation;
+import murshedi.backend.ChatBot.QuestionAnswer;
+import murshedi.backend.ChatBot.QuestionAnswerRepository;
+import murshedi.backend.ChatBot.dto.openai.OpenAiRequests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps conversation threads short. Every run re-reads the whole OpenAI thread, so once the
+ * turns asked on a conversation's current thread pass {@code max-turns} or roughly
+ * {@code max-tokens}, the next question moves the conversation to a new thread seeded with a
+ * summary of the earlier turns and the last few verbatim. The conversation's threadId is
+ * switched when the answer is saved; clients just see a new thread_id in the response.
+ * <p>
+ * Compaction is best-effort: if the summary or the new thread fails, the question is asked on
+ * the old thread and compaction is retried on the next one.
+ * <p>
+ * Answers served from the cache create no thread. The next question of such a conversation
+ * gets a thread seeded with its earlier turns, so it keeps their context and is not mistaken
+ * for a first turn. Seeding is not optional: if it fails, so does the question.
+ */
+@Component
+public class ThreadCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadCompactor.class);
+
+    // Rough token estimate; Arabic text runs a bit higher per character, which only compacts sooner
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_ANSWER_CHARS = 2000;
+
+    private static final String SUMMARY_PROMPT =
+        "Summarize the conversation below so it can be continued in a new chat. Keep the facts, " +
+        "names, numbers, decisions and open questions the user may refer back to; drop greetings " +
+        "and repetition. Write in the language of the conversation, in at most 200 words.";
+
+    private final QuestionAnswerRepository questionAnswerRepository;
+    private final OpenAiAssistantClient openAiClient;
+    private final Executor executor;
+    private final boolean enabled;
+    private final int maxTurns;
+    private final int maxTokens;
+    private final int keepRecent;
+    private final int maxSummarizedTurns;
+    private final String summaryModel;
+    private final int summaryMaxTokens;
+    private final ConcurrentHashMap<String, CompletableFuture<Compaction>> inProgress = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<String>> seeding = new ConcurrentHashMap<>();
+
+    private final AtomicLong compacted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong seeded = new AtomicLong();
+
+    public ThreadCompactor(QuestionAnswerRepository questionAnswerRepository,
+                           OpenAiAssistantClient openAiClient,
+                           @Qualifier("assistantExecutor") Executor executor,
+                           MeterRegistry meterRegistry,
+                           @Value("${assistant.thread-compaction.enabled:true}") boolean enabled,
+                           @Value("${assistant.thread-compaction.max-turns:20}") int maxTurns,
+                           @Value("${assistant.thread-compaction.max-tokens:6000}") int maxTokens,
+                           @Value("${assistant.thread-compaction.keep-recent:2}") int keepRecent,
+                           @Value("${assistant.thread-compaction.max-summarized-turns:50}") int maxSummarizedTurns,
+                           @Value("${assistant.thread-compaction.summary-model:gpt-4o-mini}") String summaryModel,
+                           @Value("${assistant.thread-compaction.summary-max-tokens:400}") int summaryMaxTokens) {
+        this.questionAnswerRepository = questionAnswerRepository;
+        this.openAiClient = openAiClient;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.maxTurns = maxTurns;
+        this.maxTokens = maxTokens;
+        this.keepRecent = keepRecent;
+        this.maxSummarizedTurns = maxSummarizedTurns;
+        this.summaryModel = summaryModel;
+        this.summaryMaxTokens = summaryMaxTokens;
+
+        FunctionCounter.builder("assistant.thread_compactions", compacted, AtomicLong::get).tag("result", "compacted").register(meterRegistry);
+        FunctionCounter.builder("assistant.thread_compactions", failed, AtomicLong::get).tag("result", "failed").register(meterRegistry);
+        FunctionCounter.builder("assistant.threads_seeded", seeded, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * The thread the next question of {@code conversation} should be asked on: the
+     * conversation's stored thread (or {@code requestedThreadId} before it has one), or a freshly
+     * seeded thread when the current one is due for compaction or the earlier turns were answered
+     * without a thread. In the compaction case the summary fields of {@code conversation} are
+     * updated; the caller saves it with the answer.
+     */
+    public CompletableFuture<String> threadFor(Conversation conversation, String requestedThreadId) {
+        if (conversation.getThreadId() == null) {
+            boolean noThread = requestedThreadId == null || requestedThreadId.isEmpty();
+            if (noThread && conversation.getId() != null
+                    && questionAnswerRepository.existsByConversation_Id(conversation.getId())) {
+                return seedThread(conversation);
+            }
+            // Nothing to compact before the conversation has a thread of its own
+            return CompletableFuture.completedFuture(requestedThreadId);
+        }
+        String threadId = conversation.getThreadId();
+        if (!enabled) {
+            return CompletableFuture.completedFuture(threadId);
+        }
+
+        long afterId = summarizedThroughId(conversation);
+        QuestionAnswerRepository.ThreadUsage usage = questionAnswerRepository.findThreadUsage(conversation.getId(), afterId);
+        long summaryChars = conversation.getThreadSummary() != null ? conversation.getThreadSummary().length() : 0;
+        long tokens = (usage.getCharacters() + summaryChars) / CHARS_PER_TOKEN;
+        if (usage.getTurns() < maxTurns && tokens < maxTokens) {
+            return CompletableFuture.completedFuture(threadId);
+        }
+
+        // Concurrent questions on the same conversation share one compaction
+        CompletableFuture<Compaction> started = new CompletableFuture<>();
+        CompletableFuture<Compaction> compaction = inProgress.putIfAbsent(conversation.getId(), started);
+        if (compaction == null) {
+            compaction = started;
+            String conversationId = conversation.getId();
+            String previousSummary = conversation.getThreadSummary();
+            executor.execute(() -> {
+                try {
+                    started.complete(compact(conversationId, threadId, previousSummary, afterId));
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    logger.warn("Could not compact thread {} of conversation {}; keeping it", threadId, conversationId, e);
+                    started.complete(null);
+                } finally {
+                    inProgress.remove(conversationId, started);
+                }
+            });
+        }
+        return compaction.thenApply(result -> {
+            if (result == null) {
+                return threadId;
+            }
+            conversation.setThreadSummary(result.summary());
+            conversation.setSummarizedThroughId(result.summarizedThroughId());
+            return result.threadId();
+        });
+    }
+
+    /**
+     * A new thread replaying the conversation's saved turns (after any summary) as user and
+     * assistant messages. Concurrent questions on the same conversation share one thread.
+     */
+    private CompletableFuture<String> seedThread(Conversation conversation) {
+        String conversationId = conversation.getId();
+        String summary = conversation.getThreadSummary();
+        long afterId = summarizedThroughId(conversation);
+        CompletableFuture<String> started = new CompletableFuture<>();
+        CompletableFuture<String> existing = seeding.putIfAbsent(conversationId, started);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    List<QuestionAnswer> turns = new ArrayList<>(questionAnswerRepository.findByConversation_IdAndIdGreaterThanOrderByIdDesc(
+                        conversationId, afterId, PageRequest.of(0, maxSummarizedTurns)));
+                    Collections.reverse(turns);
+                    List<OpenAiRequests.CreateMessage> messages = new ArrayList<>();
+                    if (summary != null && !summary.isEmpty()) {
+                        messages.add(OpenAiRequests.CreateMessage.user("Context from earlier in this conversation:\n" + summary));
+                    }
+                    for (QuestionAnswer turn : turns) {
+                        messages.add(OpenAiRequests.CreateMessage.user(turn.getQuestion()));
+                        String answer = truncate(turn.getAnswer());
+                        if (!answer.isEmpty()) {
+                            messages.add(OpenAiRequests.CreateMessage.assistant(answer));
+                        }
+                    }
+                    String threadId = openAiClient.createThread(messages).id();
+                    seeded.incrementAndGet();
+                    logger.info("Seeded thread {} with {} earlier turns of conversation {}", threadId, turns.size(), conversationId);
+                    started.complete(threadId);
+                } catch (RuntimeException e) {
+                    started.completeExceptionally(e);
+                } finally {
+                    seeding.remove(conversationId, started);
+                }
+            });
+        } catch (RuntimeException e) {
+            seeding.remove(conversationId, started);
+            started.completeExceptionally(e);
+        }
+        return started;
+    }
+
+    private Compaction compact(String conversationId, String oldThreadId, String previousSummary, long afterId) {
+        // Turns since the previous summary, newest first and capped so a very long legacy
+        // thread doesn't make an oversized summary request
+        List<QuestionAnswer> recent = new ArrayList<>(questionAnswerRepository.findByConversation_IdAndIdGreaterThanOrderByIdDesc(
+            conversationId, afterId, PageRequest.of(0, maxSummarizedTurns)));
+        if (recent.isEmpty()) {
+            throw new IllegalStateException("No saved turns to summarize");
+        }
+        Collections.reverse(recent);
+
+        StringBuilder transcript = new StringBuilder();
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            transcript.append("Earlier summary:\n").append(previousSummary).append("\n\n");
+        }
+        appendTurns(transcript, recent);
+        String summary = openAiClient.complete(summaryModel, List.of(
+            OpenAiRequests.CreateMessage.system(SUMMARY_PROMPT),
+            OpenAiRequests.CreateMessage.user(transcript.toString())), summaryMaxTokens);
+
+        StringBuilder seed = new StringBuilder("Context from earlier in this conversation:\n")
+            .append(summary.strip());
+        List<QuestionAnswer> verbatim = recent.subList(Math.max(0, recent.size() - keepRecent), recent.size());
+        if (!verbatim.isEmpty()) {
+            seed.append("\n\nMost recent exchanges:\n");
+            appendTurns(seed, verbatim);
+        }
+        String newThreadId = openAiClient.createThread(seed.toString()).id();
+
+        compacted.incrementAndGet();
+        logger.info("Compacted conversation {} after {} turns: thread {} -> {}", conversationId, recent.size(), oldThreadId, newThreadId);
+        return new Compaction(newThreadId, summary.strip(), recent.get(recent.size() - 1).getId());
+    }
+
+    private static void appendTurns(StringBuilder out, List<QuestionAnswer> turns) {
+        for (QuestionAnswer turn : turns) {
+            String answer = truncate(turn.getAnswer());
+            out.append("User: ").append(turn.getQuestion()).append('\n')
+               .append("Assistant: ").append(answer).append("\n\n");
+        }
+    }
+
+    private static String truncate(String answer) {
+        if (answer == null) {
+            return "";
+        }
+        return answer.length() > MAX_ANSWER_CHARS ? answer.substring(0, MAX_ANSWER_CHARS) + "…" : answer;
+    }
+
+    private static long summarizedThroughId(Conversation conversation) {
+        return conversation.getSummarizedThroughId() != null ? conversation.getSummarizedThroughId() : 0L;
+    }
+
+    private record Compaction(String threadId, String summary, long summarizedThroughId) {
+    }
+}
@@ -0,0 +1,57 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Orders work on one OpenAI thread: OpenAI rejects new messages and runs while a run is still
+ * active, so each thread gets an asynchronous queue and at most one task in flight. Tasks for
+ * different threads never wait on each other, and waiting tasks hold no executor thread.
+ */
+@Component
+public class ThreadRunSerializer {
+
+    private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicLong queued = new AtomicLong();
+
+    public ThreadRunSerializer(MeterRegistry meterRegistry) {
+        Gauge.builder("assistant.thread_runs.active_threads", tails, Map::size).register(meterRegistry);
+        FunctionCounter.builder("assistant.thread_runs.queued", queued, AtomicLong::get)
+            .description("Runs that waited for an earlier run on the same thread")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Start {@code task} once every task submitted earlier for {@code threadId} has finished,
+     * successfully or not.
+     */
+    public <T> CompletableFuture<T> submit(String threadId, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(threadId, done);
+        if (previous != null) {
+            queued.incrementAndGet();
+        }
+
+        CompletableFuture<Void> start = previous != null ? previous : CompletableFuture.completedFuture(null);
+        CompletableFuture<T> result = start.thenCompose(ignored -> {
+            try {
+                return task.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            tails.remove(threadId, done);
+            done.complete(null);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package murshedi.backend.ChatBot.store;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Keeps audio in the {@code shared_audio} table mapped by {@link SharedAudio}. Reads and writes
+ * go through JDBC streams rather than the entity, so a file is never loaded into a byte array here.
+ * Saves use PostgreSQL's {@code INSERT ... ON CONFLICT} upsert.
+ */
+@Component
+@ConditionalOnProperty(name = "assistant.shared-store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaSharedAudioStore implements SharedAudioStore {
+
+    private final SharedAudioRepository sharedAudioRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public JpaSharedAudioStore(SharedAudioRepository sharedAudioRepository, JdbcTemplate jdbcTemplate) {
+        this.sharedAudioRepository = sharedAudioRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void saveAudio(String fileName, Path file) {
+        // A single statement, so two instances saving the same file cannot both try to insert it
+        try (InputStream in = Files.newInputStream(file)) {
+            long length = Files.size(file);
+            jdbcTemplate.update("INSERT INTO shared_audio (data, created_at, file_name) VALUES (?, ?, ?) "
+                + "ON CONFLICT (file_name) DO UPDATE SET data = EXCLUDED.data, created_at = EXCLUDED.created_at", ps -> {
+                ps.setBinaryStream(1, in, length);
+                ps.setTimestamp(2, Timestamp.from(Instant.now()));
+                ps.setString(3, fileName);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read audio file " + file, e);
+        }
+    }
+
+    @Override
+    public boolean copyAudio(String fileName, Path target) {
+        Boolean found = jdbcTemplate.query("SELECT data FROM shared_audio WHERE file_name = ?", rs -> {
+            if (!rs.next()) {
+                return false;
+            }
+            try (InputStream in = rs.getBinaryStream(1)) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not copy shared audio " + fileName, e);
+            }
+            return true;
+        }, fileName);
+        return Boolean.TRUE.equals(found);
+    }
+
+    @Override
+    public boolean audioExists(String fileName) {
+        return sharedAudioRepository.existsById(fileName);
+    }
+
+    @Override
+    public void deleteAudio(String fileName, Instant savedBefore) {
+        jdbcTemplate.update("DELETE FROM shared_audio WHERE file_name = ? AND created_at < ?",
+            fileName, Timestamp.from(savedBefore));
+    }
+}
@@ -0,0 +1,59 @@
+package murshedi.backend.ChatBot.store;
+
+import murshedi.backend.ChatBot.service.StoredResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(name = "assistant.shared-store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaSharedResponseStore implements SharedResponseStore {
+
+    private final SharedResponseRepository sharedResponseRepository;
+
+    public JpaSharedResponseStore(SharedResponseRepository sharedResponseRepository) {
+        this.sharedResponseRepository = sharedResponseRepository;
+    }
+
+    @Override
+    public void save(StoredResponse response) {
+        SharedResponse row = new SharedResponse();
+        row.setResponseId(response.getResponseId());
+        row.setAnswer(response.getAnswer());
+        row.setThreadId(response.getThreadId());
+        row.setAudioFile(response.getAudioFile());
+        row.setAudioParts(String.join(",", response.getAudioParts()));
+        row.setStatus(response.getStatus());
+        row.setBlindMode(response.isBlindMode());
+        row.setError(truncate(response.getError(), SharedResponse.ERROR_LENGTH));
+        row.setUpdatedAt(Instant.now());
+        sharedResponseRepository.save(row);
+    }
+
+    @Override
+    public Optional<StoredResponse> find(String responseId) {
+        return sharedResponseRepository.findById(responseId).map(row -> {
+            StoredResponse response = new StoredResponse(row.getResponseId(), row.getStatus(), row.isBlindMode());
+            response.setAnswer(row.getAnswer());
+            response.setThreadId(row.getThreadId());
+            response.setAudioFile(row.getAudioFile());
+            if (row.getAudioParts() != null && !row.getAudioParts().isEmpty()) {
+                response.setAudioParts(List.of(row.getAudioParts().split(",")));
+            }
+            response.setError(row.getError());
+            return response;
+        });
+    }
+
+    @Override
+    public int deleteSavedBefore(Instant cutoff) {
+        return sharedResponseRepository.deleteUpdatedBefore(cutoff);
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text == null || text.length() <= maxLength ? text : text.substring(0, maxLength);
+    }
+}
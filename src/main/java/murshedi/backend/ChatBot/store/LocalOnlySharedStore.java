@@ -0,0 +1,49 @@
+package murshedi.backend.ChatBot.store;
+
+import murshedi.backend.ChatBot.service.StoredResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Disables sharing for single-instance deployments: nothing leaves the local node.
+ */
+@Component
+@ConditionalOnProperty(name = "assistant.shared-store.type", havingValue = "none")
+public class LocalOnlySharedStore implements SharedResponseStore, SharedAudioStore {
+
+    @Override
+    public void save(StoredResponse response) {
+    }
+
+    @Override
+    public Optional<StoredResponse> find(String responseId) {
+        return Optional.empty();
+    }
+
+    @Override
+    public int deleteSavedBefore(Instant cutoff) {
+        return 0;
+    }
+
+    @Override
+    public void saveAudio(String fileName, Path file) {
+    }
+
+    @Override
+    public boolean copyAudio(String fileName, Path target) {
+        return false;
+    }
+
+    @Override
+    public void deleteAudio(String fileName, Instant savedBefore) {
+    }
+
+    @Override
+    public boolean audioExists(String fileName) {
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package murshedi.backend.ChatBot.store;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Cluster-wide copy of a generated audio file, keyed by its file name.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "shared_audio")
+public class SharedAudio {
+
+    @Id
+    @Column(name = "file_name", length = 128)
+    private String fileName;
+
+    @Column(length = 50_000_000)
+    private byte[] data;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+}
@@ -0,0 +1,8 @@
+package murshedi.backend.ChatBot.store;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SharedAudioRepository extends JpaRepository<SharedAudio, String> {
+}
@@ -0,0 +1,29 @@
+package murshedi.backend.ChatBot.store;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Audio files visible to every instance behind the load balancer.
+ * Selected with {@code assistant.shared-store.type} ({@code jpa} by default, {@code none} to disable).
+ * Audio moves as streams between the store and local files, never as whole byte arrays.
+ */
+public interface SharedAudioStore {
+
+    void saveAudio(String fileName, Path file);
+
+    /**
+     * Copy a stored audio file to {@code target}.
+     *
+     * @return false if no audio is stored under {@code fileName}
+     */
+    boolean copyAudio(String fileName, Path target);
+
+    boolean audioExists(String fileName);
+
+    /**
+     * Delete the stored audio if it was last saved before {@code savedBefore}, so a copy that
+     * was just saved survives until whatever will reference it has been written.
+     */
+    void deleteAudio(String fileName, Instant savedBefore);
+}
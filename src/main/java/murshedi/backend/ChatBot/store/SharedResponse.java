@@ -0,0 +1,52 @@
+package murshedi.backend.ChatBot.store;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import murshedi.backend.ChatBot.dto.AnswerStatus;
+
+import java.time.Instant;
+
+/**
+ * Cluster-wide copy of a response's metadata, so any instance can answer
+ * GET /api/assistant/response/{id}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "shared_response")
+public class SharedResponse {
+
+    public static final int ERROR_LENGTH = 1024;
+
+    @Id
+    @Column(name = "response_id", length = 64)
+    private String responseId;
+
+    @Column(columnDefinition = "TEXT")
+    private String answer;
+
+    @Column(name = "thread_id")
+    private String threadId;
+
+    @Column(name = "audio_file")
+    private String audioFile;
+
+    // Comma-separated file names of the audio chunks ready so far
+    @Column(name = "audio_parts", columnDefinition = "TEXT")
+    private String audioParts;
+
+    @Enumerated(EnumType.STRING)
+    private AnswerStatus status;
+
+    @Column(name = "blind_mode")
+    private boolean blindMode;
+
+    @Column(length = ERROR_LENGTH)
+    private String error;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
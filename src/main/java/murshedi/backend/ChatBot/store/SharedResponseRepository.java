@@ -0,0 +1,19 @@
+package murshedi.backend.ChatBot.store;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface SharedResponseRepository extends JpaRepository<SharedResponse, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SharedResponse r WHERE r.updatedAt < :cutoff")
+    int deleteUpdatedBefore(@Param("cutoff") Instant cutoff);
+}
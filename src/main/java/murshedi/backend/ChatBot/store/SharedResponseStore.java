@@ -0,0 +1,22 @@
+package murshedi.backend.ChatBot.store;
+
+import murshedi.backend.ChatBot.service.StoredResponse;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Response metadata visible to every instance behind the load balancer.
+ * Selected with {@code assistant.shared-store.type} ({@code jpa} by default, {@code none} to disable).
+ */
+public interface SharedResponseStore {
+
+    void save(StoredResponse response);
+
+    Optional<StoredResponse> find(String responseId);
+
+    /**
+     * Remove responses last saved before {@code cutoff}; returns how many were removed.
+     */
+    int deleteSavedBefore(Instant cutoff);
+}
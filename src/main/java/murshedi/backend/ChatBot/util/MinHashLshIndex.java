@@ -0,0 +1,295 @@
+package murshedi.backend.ChatBot.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory near-duplicate index for short texts. Each text is normalized with
+ * {@link TextUtils#normalizeQuestion(String)}, split into character shingles and reduced to a
+ * MinHash signature of {@code bands * rows} values. Texts sharing all rows of any band become
+ * candidates, and candidates are ranked by the exact Jaccard similarity of their shingles.
+ * <p>
+ * Signatures are not kept: each entry costs its normalized text, its ID and three ints per band,
+ * roughly 450 bytes for a short question with 20 bands. The index holds at most
+ * {@code maxEntries}; past that each new text replaces the oldest one. Safe for concurrent use.
+ */
+public class MinHashLshIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+    private final int maxCandidates;
+    private final int maxEntries;
+    private final long[] seeds;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private int oldest;           // entry replaced next once the index is full
+    private long[] ids;
+    private String[] texts;
+    private int[][] bandHashes;   // [band][entry]
+    private int[][] next;         // [band][entry] -> next entry + 1 in the same slot, 0 ends the chain
+    private int[][] heads;        // [band][slot] -> first entry + 1, 0 when empty
+
+    public MinHashLshIndex(int bands, int rows, int shingleSize, int maxCandidates, int maxEntries) {
+        if (bands < 1 || rows < 1 || shingleSize < 1 || maxEntries < 1) {
+            throw new IllegalArgumentException("bands, rows, shingle size and max entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleSize = shingleSize;
+        this.maxCandidates = maxCandidates;
+        this.seeds = new long[bands * rows];
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + i);
+            seeds[i] = seed;
+        }
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * A stored text whose similarity to the query reached the threshold.
+     */
+    public record Match(long id, String text, double similarity) {
+    }
+
+    /**
+     * Add {@code text} under {@code id}. An identical normalized text already in the index
+     * is re-pointed at the new ID instead of being stored twice. When the index is full the
+     * oldest entry is evicted to make room.
+     */
+    public void add(long id, String text) {
+        String normalized = TextUtils.normalizeQuestion(text);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        int[] entryBandHashes = bandHashes(shingles(normalized));
+
+        lock.writeLock().lock();
+        try {
+            int existing = findExact(normalized, entryBandHashes[0]);
+            if (existing >= 0) {
+                ids[existing] = id;
+                return;
+            }
+            int entry;
+            if (size == maxEntries) {
+                entry = oldest;
+                oldest = (oldest + 1) % maxEntries;
+                for (int band = 0; band < bands; band++) {
+                    unlink(band, entry);
+                }
+            } else {
+                if (size == ids.length) {
+                    grow();
+                }
+                entry = size++;
+            }
+            ids[entry] = id;
+            texts[entry] = normalized;
+            for (int band = 0; band < bands; band++) {
+                bandHashes[band][entry] = entryBandHashes[band];
+                link(band, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The most similar stored text with a shingle Jaccard similarity of at least {@code threshold}.
+     */
+    public Optional<Match> findBest(String text, double threshold) {
+        String normalized = TextUtils.normalizeQuestion(text);
+        if (normalized.isEmpty()) {
+            return Optional.empty();
+        }
+        int[] queryShingles = shingles(normalized);
+        int[] queryBandHashes = bandHashes(queryShingles);
+
+        lock.readLock().lock();
+        try {
+            Set<Integer> seen = new HashSet<>();
+            int best = -1;
+            double bestSimilarity = threshold;
+            for (int band = 0; band < bands && seen.size() < maxCandidates; band++) {
+                int[] hashes = bandHashes[band];
+                int[] chain = next[band];
+                int slot = queryBandHashes[band] & (heads[band].length - 1);
+                for (int e = heads[band][slot] - 1; e >= 0 && seen.size() < maxCandidates; e = chain[e] - 1) {
+                    if (hashes[e] != queryBandHashes[band] || !seen.add(e)) {
+                        continue;
+                    }
+                    double similarity = jaccard(queryShingles, shingles(texts[e]));
+                    if (similarity >= bestSimilarity) {
+                        best = e;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+            return best < 0 ? Optional.empty() : Optional.of(new Match(ids[best], texts[best], bestSimilarity));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate(INITIAL_CAPACITY);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ────────────────────────────────────────────────────────────────────────────
+    // Storage
+    // ────────────────────────────────────────────────────────────────────────────
+
+    private void allocate(int capacity) {
+        size = 0;
+        oldest = 0;
+        ids = new long[capacity];
+        texts = new String[capacity];
+        bandHashes = new int[bands][capacity];
+        next = new int[bands][capacity];
+        heads = new int[bands][capacity];
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+        for (int band = 0; band < bands; band++) {
+            bandHashes[band] = Arrays.copyOf(bandHashes[band], capacity);
+            next[band] = new int[capacity];
+            heads[band] = new int[capacity];
+            for (int entry = 0; entry < size; entry++) {
+                link(band, entry);
+            }
+        }
+    }
+
+    private void link(int band, int entry) {
+        int slot = bandHashes[band][entry] & (heads[band].length - 1);
+        next[band][entry] = heads[band][slot];
+        heads[band][slot] = entry + 1;
+    }
+
+    private void unlink(int band, int entry) {
+        int slot = bandHashes[band][entry] & (heads[band].length - 1);
+        int[] chain = next[band];
+        if (heads[band][slot] == entry + 1) {
+            heads[band][slot] = chain[entry];
+            return;
+        }
+        for (int e = heads[band][slot] - 1; e >= 0; e = chain[e] - 1) {
+            if (chain[e] == entry + 1) {
+                chain[e] = chain[entry];
+                return;
+            }
+        }
+    }
+
+    private int findExact(String normalized, int firstBandHash) {
+        int slot = firstBandHash & (heads[0].length - 1);
+        for (int e = heads[0][slot] - 1; e >= 0; e = next[0][e] - 1) {
+            if (bandHashes[0][e] == firstBandHash && texts[e].equals(normalized)) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    // ────────────────────────────────────────────────────────────────────────────
+    // Hashing
+    // ────────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Sorted, distinct hashes of the character shingles of {@code normalized}, padded with
+     * spaces so word boundaries count.
+     */
+    private int[] shingles(String normalized) {
+        String padded = ' ' + normalized + ' ';
+        if (padded.length() <= shingleSize) {
+            return new int[]{padded.hashCode()};
+        }
+        int[] hashes = new int[padded.length() - shingleSize + 1];
+        for (int i = 0; i < hashes.length; i++) {
+            int h = 0;
+            for (int j = i; j < i + shingleSize; j++) {
+                h = 31 * h + padded.charAt(j);
+            }
+            hashes[i] = h;
+        }
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, distinct);
+    }
+
+    private int[] bandHashes(int[] shingles) {
+        int[] result = new int[bands];
+        for (int band = 0; band < bands; band++) {
+            long bandHash = band;
+            for (int row = 0; row < rows; row++) {
+                long seed = seeds[band * rows + row];
+                long min = Long.MAX_VALUE;
+                for (int shingle : shingles) {
+                    min = Math.min(min, mix(shingle ^ seed) >>> 1);
+                }
+                bandHash = mix(bandHash * 31 + min);
+            }
+            result[band] = (int) (bandHash ^ (bandHash >>> 32));
+        }
+        return result;
+    }
+
+    private static double jaccard(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,37 @@
+package murshedi.backend.ChatBot.util;
+
+/**
+ * Applies {@link TextUtils#cleanText(String)} to text that arrives in chunks.
+ * Anything after an unclosed 【 is held back until the bracket closes, so
+ * citations split across chunks are still removed.
+ */
+public class StreamingTextCleaner {
+
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * Add a chunk and return the cleaned text that is safe to emit so far.
+     */
+    public String append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return "";
+        }
+        pending.append(chunk);
+
+        int open = pending.lastIndexOf("【");
+        int cut = (open >= 0 && pending.indexOf("】", open) < 0) ? open : pending.length();
+
+        String ready = pending.substring(0, cut);
+        pending.delete(0, cut);
+        return TextUtils.cleanText(ready);
+    }
+
+    /**
+     * Flush whatever is still held back once the stream has ended.
+     */
+    public String finish() {
+        String rest = pending.toString();
+        pending.setLength(0);
+        return TextUtils.cleanText(rest);
+    }
+}
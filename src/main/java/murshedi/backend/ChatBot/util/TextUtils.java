@@ -1,9 +1,73 @@
 package murshedi.backend.ChatBot.util;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 public class TextUtils {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}؟،\\s]+$");
+    private static final Pattern ARABIC_DIACRITICS = Pattern.compile("[\\u064B-\\u0652\\u0640]");
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?؟؛…])\\s+|\\n+");
+
+    /**
+     * Normalize a question for exact-match lookups.
+     * - Applies Unicode NFKC and lower-cases
+     * - Strips Arabic diacritics and tatweel
+     * - Collapses whitespace and drops trailing punctuation
+     */
+    public static String normalizeQuestion(String question) {
+        if (question == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = ARABIC_DIACRITICS.matcher(normalized).replaceAll("");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
     
+    /**
+     * Split text into chunks of whole sentences for speech synthesis.
+     * - The first chunk is a single sentence, so its audio is ready as early as possible
+     * - Later sentences are packed into chunks of at most {@code maxChars}
+     * - A sentence longer than {@code maxChars} is cut at the last space or comma before the limit
+     */
+    public static List<String> splitSentences(String text, int maxChars) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null) {
+            return chunks;
+        }
+        StringBuilder current = new StringBuilder();
+        for (String sentence : SENTENCE_BREAK.split(text.strip())) {
+            String rest = sentence.strip();
+            while (!rest.isEmpty()) {
+                int end = rest.length();
+                if (end > maxChars) {
+                    int cut = Math.max(rest.lastIndexOf(' ', maxChars), Math.max(rest.lastIndexOf(',', maxChars), rest.lastIndexOf('،', maxChars)));
+                    end = cut > 0 ? cut + 1 : maxChars;
+                }
+                String piece = rest.substring(0, end).strip();
+                rest = rest.substring(end).strip();
+
+                if (current.length() > 0 && (chunks.isEmpty() || current.length() + 1 + piece.length() > maxChars)) {
+                    chunks.add(current.toString());
+                    current.setLength(0);
+                }
+                if (current.length() > 0) {
+                    current.append(' ');
+                }
+                current.append(piece);
+            }
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
     /**
      * Clean up the output text.
      * - Removes text within 【】 brackets
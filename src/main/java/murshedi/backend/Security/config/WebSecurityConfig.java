@@ -1,5 +1,6 @@
 package murshedi.backend.Security.config;
 
+import jakarta.servlet.DispatcherType;
 import murshedi.backend.Appuser.UserService;
 import murshedi.backend.Authentication.JwtAuthenticationFilter;
 import org.springframework.context.annotation.Bean;
@@ -37,7 +38,9 @@ public class WebSecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable()) // Disable CSRF protection
                 .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll() // Streamed/async results were authorized on the original request
                         .requestMatchers("/api/v1/auth/**", "/api/v1/registration/**").permitAll()
+                        .requestMatchers("/api/admin/**").hasAuthority("ADMIN")
                         .anyRequest().authenticated() // All other requests require authentication
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
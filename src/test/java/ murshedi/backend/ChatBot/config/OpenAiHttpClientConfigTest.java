@@ -0,0 +1,152 @@
+package murshedi.backend.ChatBot.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the OpenAI client against a local stub server that records the client port of every
+ * exchange, so reused connections show up as repeated ports.
+ */
+class OpenAiHttpClientConfigTest {
+
+    private static final int MAX_PER_ROUTE = 2;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger exchanges = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private OpenAiHttpClientConfig config;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/models", this::respond);
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        config = new OpenAiHttpClientConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "maxPerRoute", MAX_PER_ROUTE);
+        ReflectionTestUtils.setField(config, "acquireTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "requestsPerMinute", 10_000);
+        ReflectionTestUtils.setField(config, "tokensPerMinute", 1_000_000);
+        ReflectionTestUtils.setField(config, "rateLimitQueueCapacity", 100);
+        ReflectionTestUtils.setField(config, "rateLimitMaxWait", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "rateLimitMaxRetries", 0);
+        ReflectionTestUtils.setField(config, "runTokenReserve", 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        int now = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(now, Math::max);
+        try {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchanges.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            // Long enough for concurrent callers to overlap
+            Thread.sleep(20);
+            byte[] body = "{\"object\":\"list\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private RestTemplate restTemplate() {
+        HttpClient client = config.openAiHttpClient();
+        RouteLimitingInterceptor routeLimitingInterceptor = config.routeLimitingInterceptor(meterRegistry);
+        OpenAiRateLimiter rateLimiter = config.openAiRateLimiter(client, routeLimitingInterceptor, meterRegistry);
+        return config.restTemplate(client, rateLimiter, routeLimitingInterceptor);
+    }
+
+    @Test
+    void reusesOneConnectionForSequentialCalls() {
+        RestTemplate restTemplate = restTemplate();
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(restTemplate.getForObject(baseUrl + "/v1/models", String.class)).contains("list");
+        }
+
+        assertThat(exchanges).hasValue(20);
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    void concurrentCallsShareAtMostOneConnectionPerSlot() {
+        RestTemplate restTemplate = restTemplate();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                calls.add(CompletableFuture.supplyAsync(
+                    () -> restTemplate.getForObject(baseUrl + "/v1/models", String.class), callers));
+            }
+            calls.forEach(CompletableFuture::join);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertThat(exchanges).hasValue(40);
+        assertThat(maxConcurrent.get()).isLessThanOrEqualTo(MAX_PER_ROUTE);
+        assertThat(clientPorts.size()).isLessThanOrEqualTo(MAX_PER_ROUTE);
+        assertThat(meterRegistry.get("openai.http.client.exchanges.active").tag("route", baseUrl).gauge().value())
+            .isZero();
+        assertThat(meterRegistry.get("openai.http.client.requests").tag("route", baseUrl).tag("status", "200")
+            .timer().count()).isEqualTo(40);
+    }
+
+    @Test
+    void clientPerCallOpensAConnectionEachTime() {
+        // Baseline for the tests above: a client that is not shared pays a handshake per call
+        for (int i = 0; i < 5; i++) {
+            restTemplate().getForObject(baseUrl + "/v1/models", String.class);
+        }
+
+        assertThat(exchanges).hasValue(5);
+        assertThat(clientPorts).hasSize(5);
+    }
+}
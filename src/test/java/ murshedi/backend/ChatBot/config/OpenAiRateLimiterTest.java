@@ -0,0 +1,179 @@
+package murshedi.backend.ChatBot.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class OpenAiRateLimiterTest {
+
+    private static final URI MESSAGES = URI.create("https://api.openai.com/v1/threads/thread_1/messages");
+    private static final URI RUN = URI.create("https://api.openai.com/v1/threads/thread_1/runs/run_1");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "test-executor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger sent = new AtomicInteger();
+    private final ClientHttpRequestExecution execution = (request, body) -> {
+        sent.incrementAndGet();
+        return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+    };
+    private OpenAiRateLimiter limiter;
+
+    @AfterEach
+    void tearDown() {
+        if (limiter != null) {
+            limiter.shutdown();
+        }
+        executor.shutdownNow();
+    }
+
+    private OpenAiRateLimiter limiter(int requestsPerMinute, int tokensPerMinute, int queueCapacity, Duration maxWait) {
+        limiter = new OpenAiRateLimiter(requestsPerMinute, tokensPerMinute, queueCapacity, maxWait, 0, 0,
+            mock(ClientHttpRequestFactory.class), meterRegistry);
+        return limiter;
+    }
+
+    private void send(HttpMethod method, URI uri) {
+        try {
+            limiter.intercept(new MockClientHttpRequest(method, uri), new byte[0], execution).close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("openai.rate_limit.rejected").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void runsAdmittedCallOnExecutor() throws Exception {
+        limiter(60, 10_000, 10, Duration.ofSeconds(1));
+
+        String thread = limiter.supplyWhenAdmitted(1, () -> Thread.currentThread().getName(), executor)
+            .get(1, TimeUnit.SECONDS);
+
+        assertThat(thread).isEqualTo("test-executor");
+    }
+
+    @Test
+    void schedulesCallForWhenBudgetIsDueWithoutBlockingCaller() throws Exception {
+        // 10 tokens a second; the first call drains the bucket
+        limiter(600, 600, 10, Duration.ofSeconds(2));
+        limiter.supplyWhenAdmitted(600, () -> null, executor).get(1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        CompletableFuture<Long> delayed = limiter.supplyWhenAdmitted(5, System::nanoTime, executor);
+        long returned = System.nanoTime();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(returned - start)).isLessThan(100);
+        assertThat(delayed).isNotDone();
+        assertThat(meterRegistry.get("openai.rate_limit.waiting").gauge().value()).isEqualTo(1);
+        long ranAt = delayed.get(2, TimeUnit.SECONDS);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(ranAt - start)).isGreaterThanOrEqualTo(400);
+        assertThat(meterRegistry.get("openai.rate_limit.waiting").gauge().value()).isZero();
+    }
+
+    @Test
+    void rejectsCallThatWouldWaitTooLong() throws Exception {
+        limiter(600, 600, 10, Duration.ofMillis(100));
+        limiter.supplyWhenAdmitted(600, () -> null, executor).get(1, TimeUnit.SECONDS);
+
+        CompletableFuture<Object> rejected = limiter.supplyWhenAdmitted(600, () -> null, executor);
+
+        assertThatThrownBy(() -> rejected.get(1, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(OpenAiRateLimitException.class);
+        assertThat(rejected("wait_too_long")).isEqualTo(1);
+        assertThat(meterRegistry.get("openai.rate_limit.waiting").gauge().value()).isZero();
+    }
+
+    @Test
+    void rejectsCallWhenQueueIsFull() throws Exception {
+        limiter(600, 600, 1, Duration.ofSeconds(5));
+        limiter.supplyWhenAdmitted(600, () -> null, executor).get(1, TimeUnit.SECONDS);
+        CompletableFuture<Object> queued = limiter.supplyWhenAdmitted(5, () -> null, executor);
+
+        CompletableFuture<Object> rejected = limiter.supplyWhenAdmitted(5, () -> null, executor);
+
+        assertThat(queued).isNotDone();
+        assertThat(rejected).isCompletedExceptionally();
+        assertThat(rejected("queue_full")).isEqualTo(1);
+    }
+
+    @Test
+    void reservationCoversFirstRequestOfTheCall() throws Exception {
+        // Two requests a minute: the admitted call and one more
+        limiter(2, 10_000, 10, Duration.ofMillis(100));
+
+        limiter.supplyWhenAdmitted(1, () -> {
+            send(HttpMethod.GET, MESSAGES);
+            return null;
+        }, executor).get(1, TimeUnit.SECONDS);
+        send(HttpMethod.GET, MESSAGES);
+
+        assertThat(sent).hasValue(2);
+        assertThatThrownBy(() -> send(HttpMethod.GET, MESSAGES)).isInstanceOf(OpenAiRateLimitException.class);
+        assertThat(sent).hasValue(2);
+    }
+
+    @Test
+    void furtherRequestsOfAdmittedCallDoNotWait() throws Exception {
+        limiter(2, 10_000, 10, Duration.ofMillis(100));
+
+        limiter.supplyWhenAdmitted(1, () -> {
+            send(HttpMethod.POST, MESSAGES);
+            send(HttpMethod.POST, MESSAGES);
+            send(HttpMethod.POST, MESSAGES);
+            return null;
+        }, executor).get(1, TimeUnit.SECONDS);
+
+        assertThat(sent).hasValue(3);
+        // The extra requests still drew on the budget
+        assertThatThrownBy(() -> send(HttpMethod.GET, MESSAGES)).isInstanceOf(OpenAiRateLimitException.class);
+    }
+
+    @Test
+    void admitsRunPollsWithoutBudget() {
+        limiter(1, 10_000, 10, Duration.ofMillis(100));
+        send(HttpMethod.GET, MESSAGES);
+
+        send(HttpMethod.GET, RUN);
+        send(HttpMethod.POST, URI.create(RUN + "/cancel"));
+
+        assertThat(sent).hasValue(3);
+        assertThatThrownBy(() -> send(HttpMethod.GET, MESSAGES)).isInstanceOf(OpenAiRateLimitException.class);
+    }
+
+    @Test
+    void estimatesTokensFromUtf8Size() {
+        assertThat(OpenAiRateLimiter.tokensFor("abcdefgh")).isEqualTo(2);
+        assertThat(OpenAiRateLimiter.tokensFor("")).isEqualTo(1);
+        assertThat(OpenAiRateLimiter.tokensFor(null)).isEqualTo(1);
+        // Arabic letters take two bytes each
+        assertThat(OpenAiRateLimiter.tokensFor("رسوم")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,142 @@
+package murshedi.backend.ChatBot.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AudioFileResponsesTest {
+
+    private static final String HASH = "abc123";
+    private static final String ETAG = "\"" + HASH + "\"";
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    @TempDir
+    Path dir;
+
+    private File file;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.writeString(dir.resolve("output_test.mp3"), "0123456789", StandardCharsets.US_ASCII).toFile();
+        request = new MockHttpServletRequest("GET", "/api/audio/output_test.mp3");
+        response = new MockHttpServletResponse();
+    }
+
+    private void send() throws Exception {
+        AudioFileResponses.send(file, HASH, CACHE_CONTROL, request, response);
+    }
+
+    @Test
+    void sendsWholeFileWithValidators() throws Exception {
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo(CACHE_CONTROL);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+    }
+
+    @Test
+    void sendsRequestedRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-4/10");
+        assertThat(response.getContentAsString()).isEqualTo("234");
+        assertThat(response.getContentLengthLong()).isEqualTo(3);
+    }
+
+    @Test
+    void sendsSuffixRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 7-9/10");
+        assertThat(response.getContentAsString()).isEqualTo("789");
+    }
+
+    @Test
+    void rejectsRangePastEndOfFile() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void answersNotModifiedForCurrentETag() throws Exception {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void sendsWholeFileForMultipleRanges() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,4-5");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void leavesBodyToSendfileWhenSupported() throws Exception {
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename")).isEqualTo(file.getAbsolutePath());
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(2L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(5L);
+    }
+
+    @Test
+    void sendsHeadersOnlyForHead() throws Exception {
+        request.setMethod("HEAD");
+
+        send();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+}
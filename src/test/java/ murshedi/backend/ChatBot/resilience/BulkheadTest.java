@@ -0,0 +1,78 @@
+package murshedi.backend.ChatBot.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadTest {
+
+    @Test
+    void grantsPermitsUpToLimit() {
+        Bulkhead bulkhead = new Bulkhead("test", 2, 1, Duration.ofSeconds(10));
+
+        assertThat(bulkhead.acquire()).isCompleted();
+        assertThat(bulkhead.acquire()).isCompleted();
+        assertThat(bulkhead.acquire()).isNotDone();
+        assertThat(bulkhead.getActive()).isEqualTo(2);
+        assertThat(bulkhead.getQueued()).isEqualTo(1);
+    }
+
+    @Test
+    void handsReleasedPermitToWaitersInOrder() {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 2, Duration.ofSeconds(10));
+        bulkhead.acquire();
+        CompletableFuture<Void> first = bulkhead.acquire();
+        CompletableFuture<Void> second = bulkhead.acquire();
+
+        bulkhead.release();
+        assertThat(first).isCompleted();
+        assertThat(second).isNotDone();
+
+        bulkhead.release();
+        assertThat(second).isCompleted();
+        assertThat(bulkhead.getActive()).isEqualTo(1);
+
+        bulkhead.release();
+        assertThat(bulkhead.getActive()).isZero();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Duration.ofSeconds(10));
+        bulkhead.acquire();
+        bulkhead.acquire();
+
+        CompletableFuture<Void> rejected = bulkhead.acquire();
+
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(FeatureUnavailableException.class);
+        assertThat(bulkhead.getRejectedQueueFull()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWaiterAfterMaxWait() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Duration.ofMillis(50));
+        bulkhead.acquire();
+        CompletableFuture<Void> waiter = bulkhead.acquire();
+
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(FeatureUnavailableException.class);
+        // The timer dequeues the waiter just after failing it
+        long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkhead.getQueued() > 0 && System.nanoTime() < giveUpAt) {
+            Thread.sleep(5);
+        }
+        assertThat(bulkhead.getRejectedTimeout()).isEqualTo(1);
+        assertThat(bulkhead.getQueued()).isZero();
+
+        // The permit is returned rather than handed to the timed-out waiter
+        bulkhead.release();
+        assertThat(bulkhead.getActive()).isZero();
+    }
+}
@@ -0,0 +1,113 @@
+package murshedi.backend.ChatBot.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+
+    private CircuitBreaker newBreaker() {
+        // Opens at 50% failures over at least 4 of the last 10 calls; 2 trial calls when half-open
+        return new CircuitBreaker(50, 4, 10, OPEN_DURATION, 2);
+    }
+
+    private static void record(CircuitBreaker breaker, boolean... failures) {
+        for (boolean failure : failures) {
+            assertThat(breaker.tryAcquirePermission()).isTrue();
+            if (failure) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+    }
+
+    private static void waitOutOpenState() throws InterruptedException {
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = newBreaker();
+
+        record(breaker, true, true, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAtFailureRateThreshold() {
+        CircuitBreaker breaker = newBreaker();
+
+        record(breaker, false, false, true, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getRejected()).isEqualTo(1);
+        assertThat(breaker.remainingOpen()).isPositive();
+    }
+
+    @Test
+    void staysClosedBelowFailureRateThreshold() {
+        CircuitBreaker breaker = newBreaker();
+
+        record(breaker, false, false, false, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getFailureRate()).isEqualTo(0.25);
+    }
+
+    @Test
+    void admitsLimitedTrialCallsAfterOpenDuration() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        record(breaker, true, true, true, true);
+        waitOutOpenState();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void closesWhenAllTrialCallsSucceed() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        record(breaker, true, true, true, true);
+        waitOutOpenState();
+
+        record(breaker, false, false);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getFailureRate()).isZero();
+    }
+
+    @Test
+    void reopensWhenATrialCallFails() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        record(breaker, true, true, true, true);
+        waitOutOpenState();
+
+        record(breaker, false, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void ignoredTrialCallFreesItsSlot() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        record(breaker, true, true, true, true);
+        waitOutOpenState();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onIgnored();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+}
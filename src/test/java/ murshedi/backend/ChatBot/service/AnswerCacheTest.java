@@ -0,0 +1,99 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import murshedi.backend.ChatBot.dto.AnswerCacheStatsDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnswerCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AnswerCache cache(int maxSize, Duration ttl) {
+        return new AnswerCache(meterRegistry, true, maxSize, ttl);
+    }
+
+    @Test
+    void matchesNormalizedQuestion() {
+        AnswerCache cache = cache(10, Duration.ofHours(1));
+        cache.put("What are the fees?", "vs_1", "100 JD");
+
+        assertThat(cache.get("  what are   the FEES ", "vs_1")).contains("100 JD");
+        assertThat(cache.get("What are the fees for housing?", "vs_1")).isEmpty();
+    }
+
+    @Test
+    void missesAfterKnowledgeBaseChanges() {
+        AnswerCache cache = cache(10, Duration.ofHours(1));
+        cache.put("What are the fees?", "vs_1", "100 JD");
+
+        assertThat(cache.get("What are the fees?", "vs_2")).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverMaxSize() {
+        AnswerCache cache = cache(2, Duration.ofHours(1));
+        cache.put("first", "vs_1", "1");
+        cache.put("second", "vs_1", "2");
+        cache.get("first", "vs_1");
+
+        cache.put("third", "vs_1", "3");
+
+        assertThat(cache.get("second", "vs_1")).isEmpty();
+        assertThat(cache.get("first", "vs_1")).contains("1");
+        assertThat(cache.get("third", "vs_1")).contains("3");
+        assertThat(meterRegistry.get("assistant.answer_cache.evictions").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsExpiredEntries() throws Exception {
+        AnswerCache cache = cache(10, Duration.ofMillis(20));
+        cache.put("What are the fees?", "vs_1", "100 JD");
+
+        Thread.sleep(50);
+
+        assertThat(cache.get("What are the fees?", "vs_1")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void ignoresEmptyAnswersAndDisabledCache() {
+        AnswerCache cache = cache(10, Duration.ofHours(1));
+        cache.put("What are the fees?", "vs_1", "");
+        AnswerCache disabled = new AnswerCache(new SimpleMeterRegistry(), false, 10, Duration.ofHours(1));
+        disabled.put("What are the fees?", "vs_1", "100 JD");
+
+        assertThat(cache.size()).isZero();
+        assertThat(disabled.get("What are the fees?", "vs_1")).isEmpty();
+    }
+
+    @Test
+    void invalidatesQuestionAcrossVersions() {
+        AnswerCache cache = cache(10, Duration.ofHours(1));
+        cache.put("What are the fees?", "vs_1", "100 JD");
+        cache.put("What are the fees?", "vs_2", "120 JD");
+        cache.put("Where is the library?", "vs_2", "Main campus");
+
+        assertThat(cache.invalidate("what are the fees")).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        AnswerCache cache = cache(10, Duration.ofHours(1));
+        cache.put("What are the fees?", "vs_1", "100 JD");
+        cache.get("What are the fees?", "vs_1");
+        cache.get("What are the fees?", "vs_1");
+        cache.get("Where is the library?", "vs_1");
+
+        AnswerCacheStatsDto stats = cache.stats(10);
+
+        assertThat(stats.getHits()).isEqualTo(2);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getEntries()).singleElement()
+            .satisfies(entry -> assertThat(entry.hits()).isEqualTo(2));
+    }
+}
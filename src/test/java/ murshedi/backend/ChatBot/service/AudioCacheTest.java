@@ -0,0 +1,149 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import murshedi.backend.ChatBot.QuestionAnswerRepository;
+import murshedi.backend.ChatBot.store.SharedAudioStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AudioCacheTest {
+
+    private static final String A = AudioCache.fileName("a".repeat(64));
+    private static final String B = AudioCache.fileName("b".repeat(64));
+    private static final String C = AudioCache.fileName("c".repeat(64));
+
+    @TempDir
+    Path dir;
+
+    private final QuestionAnswerRepository questionAnswerRepository = mock(QuestionAnswerRepository.class);
+    private final SharedAudioStore sharedAudioStore = mock(SharedAudioStore.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AudioCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AudioCache(questionAnswerRepository, sharedAudioStore, meterRegistry, dir.toString(),
+            DataSize.ofBytes(25), Duration.ofDays(30), Duration.ofDays(1), Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    private void store(String fileName, int sizeBytes) throws Exception {
+        Files.write(cache.pathForWrite(fileName), new byte[sizeBytes]);
+        cache.added(fileName, sizeBytes);
+    }
+
+    @Test
+    void shardsFilesByKey() {
+        assertThat(cache.path(A)).isEqualTo(dir.toAbsolutePath().resolve("aa").resolve(A));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFilesOverQuota() throws Exception {
+        store(A, 10);
+        store(B, 10);
+        // A is now more recently used than B
+        assertThat(cache.isLocal(A)).isTrue();
+
+        store(C, 10);
+
+        assertThat(cache.isLocal(B)).isFalse();
+        assertThat(cache.path(B)).doesNotExist();
+        assertThat(cache.isLocal(A)).isTrue();
+        assertThat(cache.isLocal(C)).isTrue();
+        assertThat(cache.getTotalBytes()).isEqualTo(20);
+        assertThat(meterRegistry.get("assistant.audio.evictions").tag("cause", "size").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(meterRegistry.get("assistant.audio.evicted_bytes").tag("cause", "size").functionCounter().count())
+            .isEqualTo(10);
+        // Nothing references B, so its shared copy goes after the grace
+        verify(sharedAudioStore).deleteAudio(eq(B), any());
+    }
+
+    @Test
+    void keepsSharedCopyOfEvictedAudioStillReferenced() throws Exception {
+        when(questionAnswerRepository.countByAudioFile(A)).thenReturn(1L);
+        store(A, 10);
+        store(B, 10);
+
+        store(C, 10);
+
+        assertThat(cache.path(A)).doesNotExist();
+        verify(sharedAudioStore, never()).deleteAudio(eq(A), any());
+    }
+
+    @Test
+    void keepsNewFileLargerThanQuota() throws Exception {
+        store(A, 10);
+
+        store(B, 30);
+
+        assertThat(cache.isLocal(A)).isFalse();
+        assertThat(cache.isLocal(B)).isTrue();
+        assertThat(cache.getTotalBytes()).isEqualTo(30);
+    }
+
+    @Test
+    void replacingFileCountsItsSizeOnce() throws Exception {
+        store(A, 10);
+
+        store(A, 5);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getTotalBytes()).isEqualTo(5);
+    }
+
+    @Test
+    void removeDeletesAndForgetsFile() throws Exception {
+        String part = AudioCache.partFileName("a".repeat(64), 1);
+        store(part, 10);
+
+        cache.remove(part);
+
+        assertThat(cache.path(part)).doesNotExist();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void forgetsFilesRemovedBehindItsBack() throws Exception {
+        store(A, 10);
+        Files.delete(cache.path(A));
+
+        assertThat(cache.isLocal(A)).isFalse();
+        assertThat(cache.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void countsLookupsByResult() throws Exception {
+        store(A, 10);
+        when(sharedAudioStore.audioExists(C)).thenReturn(true);
+
+        assertThat(cache.lookup(A)).isTrue();
+        assertThat(cache.lookup(B)).isFalse();
+        assertThat(cache.lookup(C)).isTrue();
+
+        assertThat(meterRegistry.get("assistant.tts.cache.lookups").tag("result", "hit").functionCounter().count())
+            .isEqualTo(2);
+        assertThat(meterRegistry.get("assistant.tts.cache.lookups").tag("result", "miss").functionCounter().count())
+            .isEqualTo(1);
+    }
+}
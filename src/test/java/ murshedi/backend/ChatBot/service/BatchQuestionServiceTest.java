@@ -0,0 +1,142 @@
+package murshedi.backend.ChatBot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import murshedi.backend.ChatBot.controller.AssistantController;
+import murshedi.backend.ChatBot.dto.AssistantRequestDto;
+import murshedi.backend.ChatBot.dto.AssistantResponseDto;
+import murshedi.backend.ChatBot.dto.BatchAnswerDto;
+import murshedi.backend.ChatBot.resilience.AdaptiveLimiter;
+import murshedi.backend.ChatBot.resilience.FeatureUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Drives /api/assistant/ask/batch through Spring MVC and reads the NDJSON it streams.
+ */
+class BatchQuestionServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AssistantService assistantService = mock(AssistantService.class);
+    private final AdaptiveLimiter askLimiter = mock(AdaptiveLimiter.class);
+    private BatchQuestionService batchQuestionService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        when(assistantService.newDeadline()).thenAnswer(invocation -> RequestDeadline.after(Duration.ofMinutes(1)));
+        when(assistantService.processQuestionAsync(any(), any())).thenAnswer(invocation -> {
+            AssistantRequestDto question = invocation.getArgument(0);
+            if (question.getQuestion().startsWith("bad")) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Unsupported question"));
+            }
+            return CompletableFuture.completedFuture(AssistantResponseDto.builder()
+                .answer("Answer to " + question.getQuestion())
+                .build());
+        });
+        batchQuestionService = new BatchQuestionService(assistantService, askLimiter, objectMapper, Runnable::run,
+            2, 10, Duration.ofMinutes(1), 2);
+        AssistantController controller = new AssistantController(assistantService, mock(AudioService.class),
+            mock(IdempotencyStore.class), askLimiter, batchQuestionService, "no-store");
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchQuestionService.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> admit(InvocationOnMock invocation) {
+        return ((Supplier<CompletableFuture<T>>) invocation.getArgument(0)).get();
+    }
+
+    private List<BatchAnswerDto> ask(String... questions) throws Exception {
+        List<AssistantRequestDto> body = Arrays.stream(questions)
+            .map(question -> new AssistantRequestDto(question, false, null, null))
+            .toList();
+        MvcResult result = mvc.perform(post("/api/assistant/ask/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        return Arrays.stream(lines)
+            .map(line -> {
+                try {
+                    return objectMapper.readValue(line, BatchAnswerDto.class);
+                } catch (Exception e) {
+                    throw new AssertionError("Not a JSON line: " + line, e);
+                }
+            })
+            .sorted(Comparator.comparingInt(BatchAnswerDto::getIndex))
+            .toList();
+    }
+
+    @Test
+    void streamsOneLinePerQuestion() throws Exception {
+        when(askLimiter.execute(any(), any())).thenAnswer(BatchQuestionServiceTest::admit);
+
+        List<BatchAnswerDto> lines = ask("fees?", "bad question", "library?");
+
+        assertThat(lines).extracting(BatchAnswerDto::getIndex).containsExactly(0, 1, 2);
+        assertThat(lines).extracting(BatchAnswerDto::getStatus).containsExactly(200, 400, 200);
+        assertThat(lines.get(0).getResponse().getAnswer()).isEqualTo("Answer to fees?");
+        assertThat(lines.get(1).getError()).isEqualTo("Unsupported question");
+        assertThat(lines.get(2).getQuestion()).isEqualTo("library?");
+    }
+
+    @Test
+    void retriesQuestionShedByAdmissionLimit() throws Exception {
+        when(askLimiter.execute(any(), any()))
+            .thenThrow(new FeatureUnavailableException("ask is overloaded, retry later", Duration.ofMillis(10)))
+            .thenAnswer(BatchQuestionServiceTest::admit);
+
+        List<BatchAnswerDto> lines = ask("fees?");
+
+        assertThat(lines).singleElement().satisfies(line -> {
+            assertThat(line.getStatus()).isEqualTo(200);
+            assertThat(line.getResponse().getAnswer()).isEqualTo("Answer to fees?");
+        });
+        verify(askLimiter, times(2)).execute(any(), any());
+    }
+
+    @Test
+    void reportsQuestionStillShedAfterRetries() throws Exception {
+        when(askLimiter.execute(any(), any()))
+            .thenThrow(new FeatureUnavailableException("ask is overloaded, retry later", Duration.ofMillis(10)));
+
+        List<BatchAnswerDto> lines = ask("fees?");
+
+        assertThat(lines).singleElement().satisfies(line -> {
+            assertThat(line.getStatus()).isEqualTo(503);
+            assertThat(line.getError()).isEqualTo("ask is overloaded, retry later");
+        });
+        // The first attempt and both retries
+        verify(askLimiter, times(3)).execute(any(), any());
+    }
+}
@@ -0,0 +1,98 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IdempotencyStore store = new IdempotencyStore(meterRegistry, 100, Duration.ofHours(1));
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private CompletableFuture<String> answer(String key, String fingerprint) {
+        return store.execute("ask:user", key, fingerprint, () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture("answer " + runs.get());
+        });
+    }
+
+    @Test
+    void replaysCompletedResult() {
+        CompletableFuture<String> first = answer("key-1", "question");
+        CompletableFuture<String> retry = answer("key-1", "question");
+
+        assertThat(retry).isCompletedWithValue("answer 1");
+        assertThat(first).isCompletedWithValue("answer 1");
+        assertThat(runs).hasValue(1);
+        assertThat(meterRegistry.get("assistant.idempotency.requests").tag("result", "replayed").functionCounter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void attachesToResultInFlight() {
+        CompletableFuture<String> run = new CompletableFuture<>();
+        CompletableFuture<String> first = store.execute("ask:user", "key-1", "question", () -> run);
+        CompletableFuture<String> retry = store.execute("ask:user", "key-1", "question", () -> {
+            throw new AssertionError("must not start a second run");
+        });
+
+        assertThat(retry).isNotDone();
+        run.complete("answer");
+        assertThat(first).isCompletedWithValue("answer");
+        assertThat(retry).isCompletedWithValue("answer");
+    }
+
+    @Test
+    void rejectsKeyReusedForDifferentRequest() {
+        answer("key-1", "question");
+
+        assertThatThrownBy(() -> answer("key-1", "another question"))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void scopesKeysToCaller() {
+        answer("key-1", "question");
+        CompletableFuture<String> otherCaller = store.execute("ask:other", "key-1", "question",
+            () -> CompletableFuture.completedFuture("other answer"));
+
+        assertThat(otherCaller).isCompletedWithValue("other answer");
+    }
+
+    @Test
+    void runsAgainAfterFailure() {
+        CompletableFuture<String> failed = store.execute("ask:user", "key-1", "question",
+            () -> CompletableFuture.failedFuture(new IllegalStateException("run failed")));
+        CompletableFuture<String> retry = answer("key-1", "question");
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(retry).isCompletedWithValue("answer 1");
+    }
+
+    @Test
+    void runsEveryTimeWithoutKey() {
+        answer(null, "question");
+        answer(" ", "question");
+
+        assertThat(runs).hasValue(2);
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void rejectsOverlongKey() {
+        assertThatThrownBy(() -> answer("k".repeat(256), "question"))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+}
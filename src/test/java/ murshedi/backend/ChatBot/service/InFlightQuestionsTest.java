@@ -0,0 +1,80 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InFlightQuestionsTest {
+
+    private final InFlightQuestions inFlight = new InFlightQuestions(new SimpleMeterRegistry());
+    private final AtomicInteger runs = new AtomicInteger();
+    private final AtomicReference<RequestDeadline> sharedDeadline = new AtomicReference<>();
+    private final CompletableFuture<RunAnswer> upstream = new CompletableFuture<>();
+
+    private CompletableFuture<RunAnswer> ask(String question, RequestDeadline deadline) {
+        return inFlight.answer(question, "v1", deadline, shared -> {
+            runs.incrementAndGet();
+            sharedDeadline.set(shared);
+            return upstream;
+        });
+    }
+
+    private static RequestDeadline deadline() {
+        return RequestDeadline.after(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void identicalQuestionsShareOneRun() {
+        CompletableFuture<RunAnswer> leader = ask("What are the fees?", deadline());
+        CompletableFuture<RunAnswer> follower = ask("what are the fees", deadline());
+
+        upstream.complete(new RunAnswer("thread_1", "msg_1", "The fees are listed online."));
+
+        assertThat(runs).hasValue(1);
+        assertThat(leader.join().threadId()).isEqualTo("thread_1");
+        // Followers get the text only, not the leader's thread
+        assertThat(follower.join().threadId()).isNull();
+        assertThat(follower.join().text()).isEqualTo("The fees are listed online.");
+    }
+
+    @Test
+    void cancelsRunWhenItsOnlyCallerLeaves() {
+        RequestDeadline caller = deadline();
+        ask("What are the fees?", caller);
+
+        caller.cancel();
+
+        assertThat(sharedDeadline.get().isCancelled()).isTrue();
+    }
+
+    @Test
+    void keepsRunWhileAnotherCallerWaits() {
+        RequestDeadline leader = deadline();
+        RequestDeadline follower = deadline();
+        ask("What are the fees?", leader);
+        ask("What are the fees?", follower);
+
+        leader.cancel();
+        assertThat(sharedDeadline.get().isCancelled()).isFalse();
+
+        follower.cancel();
+        assertThat(sharedDeadline.get().isCancelled()).isTrue();
+    }
+
+    @Test
+    void startsNewRunOnceAbandonedRunCannotBeJoined() {
+        RequestDeadline caller = deadline();
+        ask("What are the fees?", caller);
+        caller.cancel();
+
+        ask("What are the fees?", deadline());
+
+        assertThat(runs).hasValue(2);
+    }
+}
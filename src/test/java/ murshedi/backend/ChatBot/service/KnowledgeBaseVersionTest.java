@@ -0,0 +1,106 @@
+package murshedi.backend.ChatBot.service;
+
+import murshedi.backend.ChatBot.config.OpenAiConfig;
+import murshedi.backend.ChatBot.dto.openai.OpenAiAssistant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KnowledgeBaseVersionTest {
+
+    private final OpenAiAssistantClient openAiClient = mock(OpenAiAssistantClient.class);
+    private final OpenAiConfig openAiConfig = mock(OpenAiConfig.class);
+
+    @BeforeEach
+    void setUp() {
+        when(openAiConfig.getAssistantId()).thenReturn("asst_1");
+    }
+
+    private static OpenAiAssistant assistant(String vectorStoreId) {
+        return new OpenAiAssistant("asst_1", new OpenAiAssistant.ToolResources(
+            new OpenAiAssistant.FileSearch(List.of(vectorStoreId))));
+    }
+
+    @Test
+    void loadsOnceUntilRefreshIsDue() {
+        when(openAiClient.getAssistant("asst_1")).thenReturn(assistant("vs_1"));
+        KnowledgeBaseVersion version = new KnowledgeBaseVersion(openAiClient, openAiConfig, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        assertThat(version.current()).isEqualTo("vs_1");
+        assertThat(version.current()).isEqualTo("vs_1");
+
+        verify(openAiClient, times(1)).getAssistant("asst_1");
+    }
+
+    @Test
+    void keepsLastVersionAndBacksOffWhenRefreshFails() throws Exception {
+        when(openAiClient.getAssistant("asst_1"))
+            .thenReturn(assistant("vs_1"))
+            .thenThrow(new RuntimeException("OpenAI is down"));
+        KnowledgeBaseVersion version = new KnowledgeBaseVersion(openAiClient, openAiConfig, Duration.ofMillis(10), Duration.ofMinutes(1));
+        version.current();
+        Thread.sleep(20);
+
+        assertThat(version.current()).isEqualTo("vs_1");
+        assertThat(version.current()).isEqualTo("vs_1");
+
+        verify(openAiClient, times(2)).getAssistant("asst_1");
+    }
+
+    @Test
+    void reportsUnknownUntilFirstLoadSucceeds() {
+        when(openAiClient.getAssistant("asst_1")).thenThrow(new RuntimeException("OpenAI is down"));
+        KnowledgeBaseVersion version = new KnowledgeBaseVersion(openAiClient, openAiConfig, Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+        assertThat(version.current()).isEqualTo("none");
+        assertThat(version.current()).isEqualTo("none");
+
+        verify(openAiClient, times(1)).getAssistant("asst_1");
+    }
+
+    @Test
+    void servesLastVersionWhileAnotherCallerRefreshes() throws Exception {
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(openAiClient.getAssistant("asst_1"))
+            .thenReturn(assistant("vs_1"))
+            .thenAnswer(invocation -> {
+                refreshing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return assistant("vs_2");
+            });
+        KnowledgeBaseVersion version = new KnowledgeBaseVersion(openAiClient, openAiConfig, Duration.ofMillis(10), Duration.ofMinutes(1));
+        version.current();
+        Thread.sleep(20);
+
+        CompletableFuture<String> refresh = CompletableFuture.supplyAsync(version::current);
+        assertThat(refreshing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(version.current()).isEqualTo("vs_1");
+        release.countDown();
+        assertThat(refresh.get(5, TimeUnit.SECONDS)).isEqualTo("vs_2");
+        verify(openAiClient, times(2)).getAssistant("asst_1");
+    }
+
+    @Test
+    void updateTakesEffectImmediately() {
+        when(openAiClient.getAssistant("asst_1")).thenReturn(assistant("vs_1"));
+        KnowledgeBaseVersion version = new KnowledgeBaseVersion(openAiClient, openAiConfig, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        version.current();
+
+        version.update("vs_2");
+
+        assertThat(version.current()).isEqualTo("vs_2");
+    }
+}
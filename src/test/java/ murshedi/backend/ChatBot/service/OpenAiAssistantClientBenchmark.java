@@ -0,0 +1,111 @@
+package murshedi.backend.ChatBot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import murshedi.backend.ChatBot.dto.openai.OpenAiList;
+import murshedi.backend.ChatBot.dto.openai.OpenAiMessage;
+import murshedi.backend.ChatBot.dto.openai.OpenAiMessageDelta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decode time and allocation per response of the typed records {@link OpenAiAssistantClient}
+ * reads, against the generic maps and trees it used to read, on payloads shaped like OpenAI's.
+ * Skipped by default; run it with:
+ * <pre>
+ * mvn test -Dtest=OpenAiAssistantClientBenchmark -Dbenchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OpenAiAssistantClientBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    // Keeps results reachable so the decode is not optimized away
+    private Object sink;
+
+    @Test
+    void runMessagesPage() throws Exception {
+        byte[] page = messagesPage().getBytes(StandardCharsets.UTF_8);
+        ObjectReader typed = objectMapper.readerFor(new TypeReference<OpenAiList<OpenAiMessage>>() {});
+        ObjectReader generic = objectMapper.readerFor(new TypeReference<Map<String, Object>>() {});
+
+        measure("messages page, typed", () -> sink = typed.<OpenAiList<OpenAiMessage>>readValue(page).data());
+        measure("messages page, map", () -> sink = generic.<Map<String, Object>>readValue(page).get("data"));
+    }
+
+    @Test
+    void messageDeltaEvent() throws Exception {
+        String event = """
+            {"id":"msg_abc123","object":"thread.message.delta","delta":{"content":[{"index":0,"type":"text",\
+            "text":{"value":" the registration fee is","annotations":[]}}]}}""";
+        ObjectReader typed = objectMapper.readerFor(OpenAiMessageDelta.class);
+
+        measure("delta event, typed", () -> {
+            OpenAiMessageDelta delta = typed.readValue(event);
+            sink = delta.delta().content().get(0).text().value();
+        });
+        measure("delta event, tree", () -> {
+            JsonNode tree = objectMapper.readTree(event);
+            sink = tree.path("delta").path("content").get(0).path("text").path("value").asText();
+        });
+    }
+
+    private void measure(String name, Decode decode) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            decode.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decode.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("%-22s %7.2f us/op %9d B/op%n", name, elapsed / 1e3 / ITERATIONS, allocated / ITERATIONS);
+    }
+
+    /**
+     * A page of assistant messages with the citations, attachments and metadata OpenAI sends
+     * but the client does not map.
+     */
+    private static String messagesPage() {
+        StringBuilder json = new StringBuilder("{\"object\":\"list\",\"data\":[");
+        for (int i = 0; i < 5; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("""
+                {"id":"msg_%1$d","object":"thread.message","created_at":1718000000,"assistant_id":"asst_abc",\
+                "thread_id":"thread_abc","run_id":"run_abc","role":"assistant","status":"completed",\
+                "incomplete_details":null,"completed_at":1718000005,"incomplete_at":null,\
+                "attachments":[],"metadata":{},"content":[{"type":"text","text":{"value":"%2$s",\
+                "annotations":[%3$s]}}]}""".formatted(i, "Answer text about admission requirements. ".repeat(20),
+                String.join(",", List.of(annotation(0), annotation(1), annotation(2)))));
+        }
+        return json.append("],\"first_id\":\"msg_0\",\"last_id\":\"msg_4\",\"has_more\":false}").toString();
+    }
+
+    private static String annotation(int index) {
+        return """
+            {"type":"file_citation","text":"【4:%1$d†source】","start_index":%2$d,"end_index":%3$d,\
+            "file_citation":{"file_id":"file-abc%1$d","quote":""}}""".formatted(index, index * 40, index * 40 + 12);
+    }
+
+    @FunctionalInterface
+    private interface Decode {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,170 @@
+package murshedi.backend.ChatBot.service;
+
+import murshedi.backend.ChatBot.dto.openai.OpenAiRun;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RunStatusPollerTest {
+
+    private static final String THREAD_ID = "thread_1";
+    private static final String RUN_ID = "run_1";
+
+    private final OpenAiAssistantClient openAiClient = mock(OpenAiAssistantClient.class);
+    private RunStatusPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        poller = new RunStatusPoller(openAiClient, 1, 2, 10);
+        ReflectionTestUtils.setField(poller, "initialDelayMs", 10L);
+        ReflectionTestUtils.setField(poller, "maxDelayMs", 40L);
+        ReflectionTestUtils.setField(poller, "backoffMultiplier", 2.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        poller.shutdown();
+    }
+
+    private static OpenAiRun run(String status) {
+        return new OpenAiRun(RUN_ID, THREAD_ID, status, null);
+    }
+
+    private static OpenAiRun await(CompletableFuture<OpenAiRun> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void completesWithRunOnceItCompletes() throws Exception {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID))
+            .thenReturn(run("queued"), run("in_progress"), run("completed"));
+
+        OpenAiRun completed = await(poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofSeconds(5))));
+
+        assertThat(completed.status()).isEqualTo("completed");
+        verify(openAiClient, never()).cancelRun(THREAD_ID, RUN_ID);
+        assertThat(poller.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void backsOffBetweenPollsUpToMaxDelay() throws Exception {
+        List<Long> polledAt = new CopyOnWriteArrayList<>();
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenAnswer(invocation -> {
+            polledAt.add(System.nanoTime());
+            return polledAt.size() < 5 ? run("in_progress") : run("completed");
+        });
+
+        await(poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofSeconds(5))));
+
+        // Delays of 10 ms, then 20, 40 and 40 again once capped
+        assertThat(millisBetween(polledAt, 0, 1)).isGreaterThanOrEqualTo(20);
+        assertThat(millisBetween(polledAt, 1, 2)).isGreaterThanOrEqualTo(40);
+        assertThat(millisBetween(polledAt, 2, 3)).isGreaterThanOrEqualTo(40);
+    }
+
+    private static long millisBetween(List<Long> times, int from, int to) {
+        return TimeUnit.NANOSECONDS.toMillis(times.get(to) - times.get(from));
+    }
+
+    @Test
+    void retriesTransientFailures() throws Exception {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID))
+            .thenThrow(new ResourceAccessException("connection reset"))
+            .thenThrow(HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", null, null, null))
+            .thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null))
+            .thenReturn(run("completed"));
+
+        OpenAiRun completed = await(poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofSeconds(5))));
+
+        assertThat(completed.status()).isEqualTo("completed");
+        verify(openAiClient, never()).cancelRun(THREAD_ID, RUN_ID);
+    }
+
+    @Test
+    void cancelsRunWhenPollingFailsPermanently() {
+        IllegalStateException failure = new IllegalStateException("bad response");
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenThrow(failure);
+
+        CompletableFuture<OpenAiRun> future = poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofSeconds(5)));
+
+        assertThatThrownBy(() -> await(future)).isInstanceOf(ExecutionException.class).hasCause(failure);
+        verify(openAiClient).cancelRun(THREAD_ID, RUN_ID);
+    }
+
+    @Test
+    void failsRunThatEndsUnsuccessfully() {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenReturn(run("failed"));
+
+        CompletableFuture<OpenAiRun> future = poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofSeconds(5)));
+
+        assertThatThrownBy(() -> await(future)).isInstanceOf(ExecutionException.class)
+            .hasMessageContaining("Assistant run failed");
+        verify(openAiClient, never()).cancelRun(THREAD_ID, RUN_ID);
+    }
+
+    @Test
+    void cancelsRunThatRequiresAction() {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenReturn(run("requires_action"));
+
+        CompletableFuture<OpenAiRun> future = poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofSeconds(5)));
+
+        assertThatThrownBy(() -> await(future)).isInstanceOf(ExecutionException.class);
+        verify(openAiClient).cancelRun(THREAD_ID, RUN_ID);
+    }
+
+    @Test
+    void cancelsRunAndTimesOutAtDeadline() {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenReturn(run("in_progress"));
+
+        CompletableFuture<OpenAiRun> future = poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofMillis(100)));
+
+        assertThatThrownBy(() -> await(future)).isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(AssistantTimeoutException.class);
+        verify(openAiClient).cancelRun(THREAD_ID, RUN_ID);
+    }
+
+    @Test
+    void keepsRetryingTransientFailuresOnlyUntilDeadline() {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenThrow(new ResourceAccessException("connection reset"));
+
+        CompletableFuture<OpenAiRun> future = poller.awaitCompletion(THREAD_ID, RUN_ID, RequestDeadline.after(Duration.ofMillis(100)));
+
+        assertThatThrownBy(() -> await(future)).isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(AssistantTimeoutException.class);
+        verify(openAiClient).cancelRun(THREAD_ID, RUN_ID);
+    }
+
+    @Test
+    void cancelsRunWhenClientGoesAway() {
+        when(openAiClient.getRunStatus(THREAD_ID, RUN_ID)).thenReturn(run("in_progress"));
+        RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(5));
+
+        CompletableFuture<OpenAiRun> future = poller.awaitCompletion(THREAD_ID, RUN_ID, deadline);
+        deadline.cancel();
+
+        // CompletableFuture.get rethrows a cancellation as is
+        assertThatThrownBy(() -> await(future)).isInstanceOf(CancellationException.class);
+        verify(openAiClient, timeout(1000)).cancelRun(THREAD_ID, RUN_ID);
+    }
+}
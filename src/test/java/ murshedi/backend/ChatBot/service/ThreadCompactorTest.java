@@ -0,0 +1,177 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import murshedi.backend.ChatBot.Conversation;
+import murshedi.backend.ChatBot.QuestionAnswer;
+import murshedi.backend.ChatBot.QuestionAnswerRepository;
+import murshedi.backend.ChatBot.dto.openai.OpenAiRequests;
+import murshedi.backend.ChatBot.dto.openai.OpenAiThread;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ThreadCompactorTest {
+
+    private static final int MAX_TURNS = 3;
+    private static final int MAX_TOKENS = 1000;
+
+    private final QuestionAnswerRepository questionAnswerRepository = mock(QuestionAnswerRepository.class);
+    private final OpenAiAssistantClient openAiClient = mock(OpenAiAssistantClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Runnable> queued = new ArrayList<>();
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        conversation = new Conversation(null, "Fees", "conv_1");
+        conversation.setThreadId("thread_old");
+        when(questionAnswerRepository.findByConversation_IdAndIdGreaterThanOrderByIdDesc(eq("conv_1"), anyLong(), any()))
+            .thenReturn(List.of(turn(3, "Q3", "A3"), turn(2, "Q2", "A2"), turn(1, "Q1", "A1")));
+        when(openAiClient.complete(anyString(), anyList(), anyInt())).thenReturn(" The user asked about fees. ");
+        when(openAiClient.createThread(anyString())).thenReturn(new OpenAiThread("thread_new"));
+        when(openAiClient.createThread(anyList())).thenReturn(new OpenAiThread("thread_seeded"));
+    }
+
+    private ThreadCompactor compactor(Executor executor) {
+        return new ThreadCompactor(questionAnswerRepository, openAiClient, executor, meterRegistry,
+            true, MAX_TURNS, MAX_TOKENS, 2, 50, "gpt-4o-mini", 400);
+    }
+
+    private static QuestionAnswer turn(long id, String question, String answer) {
+        QuestionAnswer turn = new QuestionAnswer();
+        ReflectionTestUtils.setField(turn, "id", id);
+        turn.setQuestion(question);
+        turn.setAnswer(answer);
+        return turn;
+    }
+
+    private void usage(long turns, long characters) {
+        when(questionAnswerRepository.findThreadUsage("conv_1", 0L)).thenReturn(new QuestionAnswerRepository.ThreadUsage() {
+            @Override
+            public Long getTurns() {
+                return turns;
+            }
+
+            @Override
+            public Long getCharacters() {
+                return characters;
+            }
+        });
+    }
+
+    private double compactions(String result) {
+        return meterRegistry.get("assistant.thread_compactions").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    void keepsShortThread() {
+        usage(MAX_TURNS - 1, 100);
+
+        String threadId = compactor(Runnable::run).threadFor(conversation, "thread_old").join();
+
+        assertThat(threadId).isEqualTo("thread_old");
+        verifyNoInteractions(openAiClient);
+    }
+
+    @Test
+    void compactsThreadWithTooManyTurns() {
+        usage(MAX_TURNS, 100);
+
+        String threadId = compactor(Runnable::run).threadFor(conversation, "thread_old").join();
+
+        assertThat(threadId).isEqualTo("thread_new");
+        assertThat(conversation.getThreadSummary()).isEqualTo("The user asked about fees.");
+        assertThat(conversation.getSummarizedThroughId()).isEqualTo(3L);
+        ArgumentCaptor<String> seed = ArgumentCaptor.forClass(String.class);
+        verify(openAiClient).createThread(seed.capture());
+        // The summary plus the last two turns verbatim, oldest first
+        assertThat(seed.getValue())
+            .startsWith("Context from earlier in this conversation:\nThe user asked about fees.")
+            .contains("Most recent exchanges:\nUser: Q2\nAssistant: A2\n\nUser: Q3\nAssistant: A3")
+            .doesNotContain("Q1");
+        assertThat(compactions("compacted")).isEqualTo(1);
+    }
+
+    @Test
+    void compactsThreadWithTooManyTokens() {
+        usage(1, MAX_TOKENS * 4L);
+
+        String threadId = compactor(Runnable::run).threadFor(conversation, "thread_old").join();
+
+        assertThat(threadId).isEqualTo("thread_new");
+    }
+
+    @Test
+    void keepsOldThreadWhenSummaryFails() {
+        usage(MAX_TURNS, 100);
+        when(openAiClient.complete(anyString(), anyList(), anyInt())).thenThrow(new RuntimeException("OpenAI is down"));
+
+        String threadId = compactor(Runnable::run).threadFor(conversation, "thread_old").join();
+
+        assertThat(threadId).isEqualTo("thread_old");
+        assertThat(conversation.getThreadSummary()).isNull();
+        verify(openAiClient, never()).createThread(anyString());
+        assertThat(compactions("failed")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentQuestionsShareOneCompaction() {
+        usage(MAX_TURNS, 100);
+        ThreadCompactor compactor = compactor(queued::add);
+
+        CompletableFuture<String> first = compactor.threadFor(conversation, "thread_old");
+        CompletableFuture<String> second = compactor.threadFor(conversation, "thread_old");
+        queued.forEach(Runnable::run);
+
+        assertThat(queued).hasSize(1);
+        assertThat(first.join()).isEqualTo("thread_new");
+        assertThat(second.join()).isEqualTo("thread_new");
+        verify(openAiClient, times(1)).complete(anyString(), anyList(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void seedsThreadForConversationAnsweredFromCache() {
+        conversation.setThreadId(null);
+        when(questionAnswerRepository.existsByConversation_Id("conv_1")).thenReturn(true);
+
+        String threadId = compactor(Runnable::run).threadFor(conversation, null).join();
+
+        assertThat(threadId).isEqualTo("thread_seeded");
+        ArgumentCaptor<List<OpenAiRequests.CreateMessage>> messages = ArgumentCaptor.forClass(List.class);
+        verify(openAiClient).createThread(messages.capture());
+        assertThat(messages.getValue()).extracting(OpenAiRequests.CreateMessage::content)
+            .containsExactly("Q1", "A1", "Q2", "A2", "Q3", "A3");
+        assertThat(meterRegistry.get("assistant.threads_seeded").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void newConversationKeepsRequestedThread() {
+        conversation.setThreadId(null);
+
+        String threadId = compactor(Runnable::run).threadFor(conversation, "thread_client").join();
+
+        assertThat(threadId).isEqualTo("thread_client");
+        verifyNoInteractions(openAiClient);
+    }
+}
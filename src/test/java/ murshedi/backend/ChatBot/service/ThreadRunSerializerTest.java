@@ -0,0 +1,92 @@
+package murshedi.backend.ChatBot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThreadRunSerializerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadRunSerializer serializer = new ThreadRunSerializer(meterRegistry);
+
+    @Test
+    void startsTasksOnOneThreadInSubmissionOrder() {
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> firstRun = new CompletableFuture<>();
+        CompletableFuture<String> secondRun = new CompletableFuture<>();
+
+        CompletableFuture<String> first = serializer.submit("thread-1", () -> {
+            started.add("first");
+            return firstRun;
+        });
+        CompletableFuture<String> second = serializer.submit("thread-1", () -> {
+            started.add("second");
+            return secondRun;
+        });
+
+        assertThat(started).containsExactly("first");
+        firstRun.complete("a");
+        assertThat(first).isCompletedWithValue("a");
+        assertThat(started).containsExactly("first", "second");
+        secondRun.complete("b");
+        assertThat(second).isCompletedWithValue("b");
+        assertThat(meterRegistry.get("assistant.thread_runs.queued").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotOrderTasksOfDifferentThreads() {
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        serializer.submit("thread-1", () -> {
+            started.add("thread-1");
+            return new CompletableFuture<>();
+        });
+        serializer.submit("thread-2", () -> {
+            started.add("thread-2");
+            return new CompletableFuture<>();
+        });
+
+        assertThat(started).containsExactly("thread-1", "thread-2");
+    }
+
+    @Test
+    void startsNextTaskAfterFailure() {
+        CompletableFuture<String> failed = serializer.submit("thread-1", () -> {
+            throw new IllegalStateException("run failed");
+        });
+        CompletableFuture<String> next = serializer.submit("thread-1", () -> CompletableFuture.completedFuture("ok"));
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(next).isCompletedWithValue("ok");
+    }
+
+    @Test
+    void forgetsThreadOnceItsLastTaskCompletes() {
+        CompletableFuture<String> run = new CompletableFuture<>();
+        serializer.submit("thread-1", () -> run);
+        assertThat(meterRegistry.get("assistant.thread_runs.active_threads").gauge().value()).isEqualTo(1);
+
+        run.complete("done");
+
+        assertThat(meterRegistry.get("assistant.thread_runs.active_threads").gauge().value()).isZero();
+    }
+
+    @Test
+    void keepsThreadWhileALaterTaskIsQueued() {
+        CompletableFuture<String> firstRun = new CompletableFuture<>();
+        CompletableFuture<String> secondRun = new CompletableFuture<>();
+        serializer.submit("thread-1", () -> firstRun);
+        serializer.submit("thread-1", () -> secondRun);
+
+        firstRun.complete("a");
+        assertThat(meterRegistry.get("assistant.thread_runs.active_threads").gauge().value()).isEqualTo(1);
+
+        secondRun.complete("b");
+        assertThat(meterRegistry.get("assistant.thread_runs.active_threads").gauge().value()).isZero();
+    }
+}
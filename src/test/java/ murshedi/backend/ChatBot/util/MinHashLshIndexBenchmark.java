@@ -0,0 +1,79 @@
+package murshedi.backend.ChatBot.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Lookup latency and heap use of {@link MinHashLshIndex} with the production settings.
+ * Skipped by default; run it with the production heap:
+ * <pre>
+ * mvn test -Dtest=MinHashLshIndexBenchmark -Dbenchmark=true -DargLine=-Xmx512m -Dbenchmark.entries=100000
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MinHashLshIndexBenchmark {
+
+    private static final String[] WORDS = {
+        "what", "are", "the", "fees", "for", "how", "do", "i", "apply", "to", "program", "student",
+        "housing", "library", "card", "register", "course", "exam", "schedule", "scholarship",
+        "deadline", "admission", "requirements", "engineering", "medicine", "transfer", "credits",
+        "semester", "campus", "parking", "international", "visa", "graduate", "master", "degree",
+        "عن", "ما", "هي", "رسوم", "التسجيل", "في", "الجامعة", "كيف", "أقدم", "على", "منحة", "السكن"
+    };
+
+    @Test
+    void lookupLatencyAndHeap() {
+        int entries = Integer.getInteger("benchmark.entries", 100_000);
+        int lookups = 10_000;
+        Random random = new Random(42);
+        String[] questions = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            questions[i] = randomQuestion(random);
+        }
+
+        long heapBefore = usedHeap();
+        MinHashLshIndex index = new MinHashLshIndex(20, 3, 3, 256, entries);
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            index.add(i, questions[i]);
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+        long heapAfter = usedHeap();
+
+        long[] latencies = new long[lookups];
+        for (int i = 0; i < lookups; i++) {
+            // Half paraphrases of stored questions, half unrelated
+            String query = i % 2 == 0 ? questions[random.nextInt(entries)] + " please" : randomQuestion(random);
+            long start = System.nanoTime();
+            index.findBest(query, 0.6);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("entries=%d size=%d build=%dms heap=%.1fMB (%d B/entry) max-heap=%dMB p50=%dus p99=%dus%n",
+            entries, index.size(), buildMillis,
+            (heapAfter - heapBefore) / 1e6, (heapAfter - heapBefore) / Math.max(1, index.size()),
+            Runtime.getRuntime().maxMemory() / (1024 * 1024),
+            latencies[lookups / 2] / 1000, latencies[lookups * 99 / 100] / 1000);
+    }
+
+    private static String randomQuestion(Random random) {
+        int length = 5 + random.nextInt(10);
+        StringBuilder question = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            question.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return question.append(random.nextInt(1000)).toString();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
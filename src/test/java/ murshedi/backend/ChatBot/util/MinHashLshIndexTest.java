@@ -0,0 +1,88 @@
+package murshedi.backend.ChatBot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MinHashLshIndexTest {
+
+    private MinHashLshIndex newIndex(int maxEntries) {
+        return new MinHashLshIndex(20, 3, 3, 256, maxEntries);
+    }
+
+    @Test
+    void findsParaphraseAboveThreshold() {
+        MinHashLshIndex index = newIndex(100);
+        index.add(1, "What are the tuition fees for the computer science program?");
+        index.add(2, "How do I register for the library card?");
+
+        Optional<MinHashLshIndex.Match> match = index.findBest("what are the tuition fees for computer science program", 0.6);
+
+        assertThat(match).isPresent();
+        assertThat(match.get().id()).isEqualTo(1);
+        assertThat(match.get().similarity()).isGreaterThanOrEqualTo(0.6);
+    }
+
+    @Test
+    void ignoresCandidatesBelowThreshold() {
+        MinHashLshIndex index = newIndex(100);
+        index.add(1, "What are the tuition fees for the computer science program?");
+
+        assertThat(index.findBest("When does the computer science program start?", 0.6)).isEmpty();
+        assertThat(index.findBest("Where is the cafeteria?", 0.1)).isEmpty();
+    }
+
+    @Test
+    void exactMatchHasSimilarityOneAndThresholdIsInclusive() {
+        MinHashLshIndex index = newIndex(100);
+        index.add(1, "How do I apply?");
+
+        Optional<MinHashLshIndex.Match> match = index.findBest("  how do I APPLY? ", 1.0);
+
+        assertThat(match).isPresent();
+        assertThat(match.get().similarity()).isEqualTo(1.0);
+    }
+
+    @Test
+    void exactDuplicateIsRepointedInsteadOfStoredTwice() {
+        MinHashLshIndex index = newIndex(100);
+        index.add(1, "How do I apply?");
+        index.add(2, "how do i apply?");
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findBest("How do I apply?", 0.9)).map(MinHashLshIndex.Match::id).contains(2L);
+    }
+
+    @Test
+    void evictsOldestEntriesPastMaxEntries() {
+        MinHashLshIndex index = newIndex(3);
+        index.add(1, "What are the admission requirements for engineering?");
+        index.add(2, "Where can I find the academic calendar for this year?");
+        index.add(3, "How much does student housing cost per semester?");
+        index.add(4, "Which scholarships are available for international students?");
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.findBest("What are the admission requirements for engineering?", 0.9)).isEmpty();
+        assertThat(index.findBest("Where can I find the academic calendar for this year?", 0.9))
+            .map(MinHashLshIndex.Match::id).contains(2L);
+        assertThat(index.findBest("Which scholarships are available for international students?", 0.9))
+            .map(MinHashLshIndex.Match::id).contains(4L);
+    }
+
+    @Test
+    void evictionKeepsChainsIntactAcrossManyWraps() {
+        MinHashLshIndex index = newIndex(50);
+        for (int i = 0; i < 1000; i++) {
+            index.add(i, "question number " + i + " about topic " + (i % 7));
+        }
+
+        assertThat(index.size()).isEqualTo(50);
+        for (int i = 950; i < 1000; i++) {
+            assertThat(index.findBest("question number " + i + " about topic " + (i % 7), 1.0))
+                .map(MinHashLshIndex.Match::id).contains((long) i);
+        }
+        assertThat(index.findBest("question number 10 about topic 3", 1.0)).isEmpty();
+    }
+}